@@ -0,0 +1,106 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.benchmark;
+
+import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.intersection.CarSemaphore;
+import org.oristool.omnibus.intersection.FlowMetrics;
+import org.oristool.omnibus.vehicle.analysis.BatchQueueAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.MMSS_QueueAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It compares the analysis of the queues of the flows of an intersection one
+ * at a time, with {@link MMSS_QueueAnalyzer}, and all together, with
+ * {@link BatchQueueAnalyzer}. The flows have sizes 10, 31 and 100 in turn,
+ * different arrival rates and semaphores green in consecutive slots; both
+ * benchmarks include the availability vectors and the metrics of the flows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchQueueBenchmark {
+
+    private static final int[] SIZES = {10, 31, 100};
+
+    @Param({"1", "3", "8"})
+    public int flowCount;
+
+    @Param({"440"})
+    public int horizonSeconds;
+
+    @Param({"0.1"})
+    public String timeStep;
+
+    private CarFlow[] carFlows;
+    private BigDecimal step;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.step = new BigDecimal(timeStep);
+        this.carFlows = new CarFlow[flowCount];
+        int slot = BenchmarkScenarios.SEM_PERIOD.intValue() / flowCount;
+        for (int f = 0; f < flowCount; f++) {
+            carFlows[f] = new CarFlow("flow" + f);
+            carFlows[f].setQueue(BenchmarkScenarios.queue(SIZES[f % SIZES.length],
+                    new BigDecimal("0.05").add(new BigDecimal("0.01").multiply(BigDecimal.valueOf(f)))));
+            CarSemaphore carSemaphore = new CarSemaphore(BenchmarkScenarios.SEM_PERIOD, step);
+            carSemaphore.setGreenSeconds(f * slot, (f + 1) * slot);
+            carFlows[f].addObstacle(carSemaphore);
+        }
+    }
+
+    @Benchmark
+    public FlowMetrics[] separate() {
+        FlowMetrics[] metrics = new FlowMetrics[flowCount];
+        for (int f = 0; f < flowCount; f++) {
+            metrics[f] = carFlows[f].analyzeQueue(new MMSS_QueueAnalyzer(), BigInteger.valueOf(horizonSeconds), step)
+                    .getFlowMetrics();
+        }
+        return metrics;
+    }
+
+    @Benchmark
+    public FlowMetrics[] batch() {
+        CarFlow.analyzeQueues(new BatchQueueAnalyzer(), BigInteger.valueOf(horizonSeconds), step, carFlows);
+        FlowMetrics[] metrics = new FlowMetrics[flowCount];
+        for (int f = 0; f < flowCount; f++) {
+            metrics[f] = carFlows[f].getFlowMetrics();
+        }
+        return metrics;
+    }
+
+}
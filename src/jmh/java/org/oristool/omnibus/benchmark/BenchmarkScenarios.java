@@ -0,0 +1,185 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.benchmark;
+
+import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.intersection.CarSemaphore;
+import org.oristool.omnibus.intersection.analysis.SteadyStateAnalyzer;
+import org.oristool.omnibus.tram.TramCrossing;
+import org.oristool.omnibus.tram.TramLine;
+import org.oristool.omnibus.tram.analysis.ParallelGreenProbabilityVisitor;
+import org.oristool.omnibus.tram.pn.PetriNetTramTrackBuilder;
+import org.oristool.omnibus.vehicle.BaseQueue;
+import org.oristool.omnibus.vehicle.BaseQueueBuilder;
+import org.oristool.omnibus.vehicle.analysis.TransientAnalyzer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * The inputs shared by the benchmarks: queues and availability vectors built
+ * as in the experiments of the paper, so that the kernels are measured on
+ * realistic data.
+ */
+public final class BenchmarkScenarios {
+
+    /**
+     * The obstacles that make the availability of a benchmarked queue.
+     */
+    public enum Availability {
+        /** A semaphore with period 110 s, green for the first 45 s. */
+        SEMAPHORE,
+        /** The crossing of the two-track tram line of the paper. */
+        TRAM,
+        /** Both the semaphore and the tram crossing. */
+        SEMAPHORE_AND_TRAM
+    }
+
+    /**
+     * The period of the semaphore, in seconds.
+     */
+    public static final BigInteger SEM_PERIOD = BigInteger.valueOf(110);
+
+    /**
+     * The green time of the semaphore at the start of its period, in seconds.
+     */
+    public static final int SEM_GREEN = 45;
+
+    private static final BigDecimal CAR_SPACE = new BigDecimal("4.8");
+    private static final BigDecimal MAX_SPEED = new BigDecimal("13.888");
+
+    private BenchmarkScenarios() {
+    }
+
+    /**
+     * It builds an empty queue with the given size and arrival rate. As in the
+     * M/M/S/S model of the paper, the service rate of each car is the max speed
+     * over the length of the road, so that the service rate of a full queue does
+     * not depend on its size.
+     *
+     * @param size   the maximum number of cars in the queue
+     * @param lambda the arrival rate, in cars per second
+     * @return the queue
+     */
+    public static BaseQueue queue(int size, BigDecimal lambda) {
+        BigDecimal mu = MAX_SPEED.divide(CAR_SPACE.multiply(BigDecimal.valueOf(size)), 5, RoundingMode.FLOOR);
+        return BaseQueueBuilder.getInstance(lambda, mu, BigInteger.valueOf(size), BigInteger.ZERO);
+    }
+
+    /**
+     * It builds the semaphore of the benchmarks.
+     *
+     * @param timeStep the temporal resolution
+     * @return the semaphore
+     */
+    public static CarSemaphore semaphore(BigDecimal timeStep) {
+        return semaphore(SEM_PERIOD.intValue(), SEM_GREEN, timeStep);
+    }
+
+    /**
+     * It builds a semaphore that is green at the start of its period.
+     *
+     * @param periodSeconds the period of the semaphore, in seconds
+     * @param greenSeconds  the green time, in seconds
+     * @param timeStep      the temporal resolution
+     * @return the semaphore
+     */
+    public static CarSemaphore semaphore(int periodSeconds, int greenSeconds, BigDecimal timeStep) {
+        CarSemaphore carSemaphore = new CarSemaphore(BigInteger.valueOf(periodSeconds), timeStep);
+        carSemaphore.setGreenSeconds(0, greenSeconds);
+        return carSemaphore;
+    }
+
+    /**
+     * It builds and analyzes the crossing of a tram line made of two tracks with
+     * the parameters of the paper (period 220 s, the second track shifted by
+     * 40 s).
+     *
+     * @param timeStep the temporal resolution of the analysis
+     * @return the analyzed tram crossing
+     */
+    public static TramCrossing tramCrossing(BigDecimal timeStep) {
+        TramLine tramLine = new TramLine("line1");
+        tramLine.addTramTrack(
+                PetriNetTramTrackBuilder.getInstance("bin1", BigInteger.valueOf(220), BigInteger.ZERO,
+                        BigInteger.ZERO, BigInteger.valueOf(120), BigInteger.valueOf(5), BigInteger.valueOf(6),
+                        BigInteger.valueOf(14)),
+                PetriNetTramTrackBuilder.getInstance("bin2", BigInteger.valueOf(220), BigInteger.valueOf(40),
+                        BigInteger.ZERO, BigInteger.valueOf(40), BigInteger.valueOf(5), BigInteger.valueOf(6),
+                        BigInteger.valueOf(14)));
+        TramCrossing tramCrossing = new TramCrossing(tramLine);
+        tramCrossing.analyze(new ParallelGreenProbabilityVisitor(), timeStep);
+        return tramCrossing;
+    }
+
+    /**
+     * It builds a car flow with the given queue and obstacles.
+     *
+     * @param queue        the queue of the flow
+     * @param availability the obstacles of the flow
+     * @param timeStep     the temporal resolution
+     * @return the car flow
+     */
+    public static CarFlow carFlow(BaseQueue queue, Availability availability, BigDecimal timeStep) {
+        CarFlow carFlow = new CarFlow("benchmark");
+        carFlow.setQueue(queue);
+        if (availability != Availability.TRAM)
+            carFlow.addObstacle(semaphore(timeStep));
+        if (availability != Availability.SEMAPHORE)
+            carFlow.addObstacle(tramCrossing(timeStep));
+        return carFlow;
+    }
+
+    /**
+     * It returns the availability vector of the given obstacles.
+     *
+     * @param availability   the obstacles
+     * @param horizonSeconds the length of the vector, in seconds
+     * @param timeStep       the temporal resolution
+     * @return the availability at each time step of the horizon
+     */
+    public static double[] availability(Availability availability, int horizonSeconds, BigDecimal timeStep) {
+        CarFlow carFlow = carFlow(null, availability, timeStep);
+        return carFlow.getIntersectionAvailability(steps(horizonSeconds, timeStep));
+    }
+
+    /**
+     * It returns the matrix of the probabilities to have j cars at the end of a
+     * hyperperiod starting with k cars, that the steady state analyzers compute
+     * before solving the chain.
+     *
+     * @param carFlow  the car flow
+     * @param analyzer the transient analyzer of the queue
+     * @param timeStep the temporal resolution
+     * @return the pkj matrix
+     */
+    public static double[][] pkjMatrix(CarFlow carFlow, TransientAnalyzer analyzer, BigDecimal timeStep) {
+        return SteadyStateAnalyzer.buildPkjMatrix(carFlow, analyzer, timeStep, null, null);
+    }
+
+    /**
+     * @param seconds  a time length, in seconds
+     * @param timeStep the temporal resolution
+     * @return the number of time steps in the time length
+     */
+    public static int steps(int seconds, BigDecimal timeStep) {
+        return BigDecimal.valueOf(seconds).divide(timeStep, 0, RoundingMode.FLOOR).intValue();
+    }
+
+}
@@ -0,0 +1,191 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.benchmark;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import org.oristool.omnibus.bestsempattern.MinMaxOccupationSemAnalyzer;
+import org.oristool.omnibus.bestsempattern.ScenarioDefiner;
+import org.oristool.omnibus.bestsempattern.SemPatternGenerator;
+import org.oristool.omnibus.bestsempattern.VehicleFlow;
+import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.intersection.FlowMetrics;
+import org.oristool.omnibus.intersection.pattern.FlowResultCache;
+import org.oristool.omnibus.intersection.pattern.SlotPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * It measures the end-to-end throughput of the evaluation of semaphore
+ * patterns with {@link MinMaxOccupationSemAnalyzer}: application of the
+ * pattern, steady state of each flow, transient over one hyperperiod and
+ * maximum occupation. The scenario is the three-flow one of
+ * {@link ScenarioDefiner}, with the 390 patterns of Table 3; each thread has
+ * its own analyzer, as in the pattern search, and evaluates the patterns
+ * round robin from its own offset.
+ * <p>
+ * The score is patterns per second over all threads. Two parameters expose
+ * the shared state of the comparators: the flow result cache (none, one per
+ * thread or one shared) and the result sink (none or one CSVWriter shared by
+ * all threads). The main method runs the benchmark at 1, 2, 4, ... threads up
+ * to the number of processors, or to its first argument, and prints the
+ * throughput per thread of each run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PatternThroughputBenchmark {
+
+    /**
+     * The scenario and the patterns, shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Scenario {
+
+        @Param({"NONE", "PRIVATE", "SHARED"})
+        public String flowResultCache;
+
+        @Param({"NONE", "CSV"})
+        public String resultSink;
+
+        CarFlow[] carFlows;
+        List<SlotPattern> patterns;
+        FlowResultCache<FlowMetrics> sharedCache;
+        CSVWriter resultWriter;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.carFlows = ScenarioDefiner.createScenario();
+            List<VehicleFlow> vehicleFlows = new ArrayList<>();
+            for (int i = 0; i < carFlows.length; i++) {
+                vehicleFlows.add(new VehicleFlow(Integer.toString(i), Arrays.asList(15, 25, 35)));
+            }
+            this.patterns = StreamSupport.stream(SemPatternGenerator.spliterateAllSlotPatternWithGreenSlotSets(
+                    vehicleFlows, ScenarioDefiner.semPeriod.intValue(), 5), false).collect(Collectors.toList());
+            this.sharedCache = new FlowResultCache<>();
+            this.resultWriter = new CSVWriter(Writer.nullWriter(), '\t');
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            resultWriter.close();
+        }
+    }
+
+    private MinMaxOccupationSemAnalyzer analyzer;
+    private List<SlotPattern> patterns;
+    private CSVWriter resultWriter;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Scenario scenario, ThreadParams threadParams) {
+        this.analyzer = (MinMaxOccupationSemAnalyzer) new MinMaxOccupationSemAnalyzer()
+                .setTimeStep(ScenarioDefiner.timeStep).setCarFlows(scenario.carFlows);
+        if (scenario.flowResultCache.equals("NONE"))
+            analyzer.setFlowResultCache(null);
+        else if (scenario.flowResultCache.equals("SHARED"))
+            analyzer.setFlowResultCache(scenario.sharedCache);
+        this.patterns = scenario.patterns;
+        this.resultWriter = scenario.resultSink.equals("CSV") ? scenario.resultWriter : null;
+        this.next = threadParams.getThreadIndex() * patterns.size() / threadParams.getThreadCount();
+    }
+
+    @Benchmark
+    public double evaluatePattern() {
+        SlotPattern pattern = patterns.get(next);
+        next = (next + 1) % patterns.size();
+        double value = analyzer.evaluate(pattern);
+        if (resultWriter != null)
+            resultWriter.writeNext(new String[] { pattern.toString(), Double.toString(value) });
+        return value;
+    }
+
+    /**
+     * It runs the benchmark with the gc profiler at a growing number of threads.
+     * The first argument, if it is a number, is the maximum number of threads;
+     * the others are JMH options.
+     *
+     * @param args the maximum number of threads and the JMH options
+     * @throws RunnerException             if the benchmarks fail
+     * @throws CommandLineOptionException if the options cannot be parsed
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 0 && args[0].matches("\\d+")) {
+            maxThreads = Integer.parseInt(args[0]);
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        List<String> lines = new ArrayList<>();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(maxThreads);
+
+        for (int threads : threadCounts) {
+            Collection<RunResult> results = new Runner(new OptionsBuilder()
+                    .parent(new CommandLineOptions(args))
+                    .include(PatternThroughputBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build()).run();
+            for (RunResult result : results) {
+                double score = result.getPrimaryResult().getScore();
+                lines.add(String.format("%7d %7s %7s %12.2f %12.2f", threads,
+                        result.getParams().getParam("flowResultCache"), result.getParams().getParam("resultSink"),
+                        score, score / threads));
+            }
+        }
+
+        System.out.printf("%7s %7s %7s %12s %12s%n", "threads", "cache", "sink", "patterns/s", "per thread");
+        lines.forEach(System.out::println);
+    }
+
+}
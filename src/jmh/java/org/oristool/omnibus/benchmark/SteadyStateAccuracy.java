@@ -0,0 +1,133 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.benchmark;
+
+import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.intersection.analysis.DTMCSteadyStateAnalyzer;
+import org.oristool.omnibus.intersection.analysis.TransientSteadyStateAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.MMSS_QueueAnalyzer;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * It compares the accuracy of the steady state paths measured by
+ * {@link SteadyStateBenchmark} on the same grid. For each path it prints the
+ * L1 distance from a reference distribution, obtained by solving the linear
+ * system of the chain with Gaussian elimination, and the L1 residual
+ * {@code |pi P - pi|} with respect to the pkj matrix P.
+ * <p>
+ * The optional arguments are the comma-separated queue sizes and
+ * hyperperiods, e.g. "10,100 60,220".
+ */
+public class SteadyStateAccuracy {
+
+    public static void main(String[] args) {
+        int[] queueSizes = args.length > 0 ? parse(args[0]) : new int[] {10, 50, 100, 250, 500};
+        int[] hyperPeriods = args.length > 1 ? parse(args[1]) : new int[] {60, 110, 220, 600};
+        BigDecimal timeStep = new BigDecimal("0.1");
+
+        System.out.printf("%9s %11s %14s %14s %14s %14s%n", "queueSize", "hyperPeriod", "dtmcError", "dtmcResidual",
+                "transientError", "transientRes.");
+        for (int queueSize : queueSizes) {
+            for (int hyperPeriod : hyperPeriods) {
+                CarFlow carFlow = SteadyStateBenchmark.carFlow(queueSize, hyperPeriod, timeStep);
+                double[][] pkj = BenchmarkScenarios.pkjMatrix(carFlow, new MMSS_QueueAnalyzer(), timeStep);
+                double[] reference = solve(pkj);
+
+                double[] dtmc = new DTMCSteadyStateAnalyzer().getSteadyStateDistribution(carFlow,
+                        new MMSS_QueueAnalyzer(), timeStep);
+                @SuppressWarnings("deprecation")
+                double[] transient_ = new TransientSteadyStateAnalyzer(SteadyStateBenchmark.EPSILON)
+                        .getSteadyStateDistribution(carFlow, new MMSS_QueueAnalyzer(), timeStep);
+
+                System.out.printf("%9d %11d %14.3e %14.3e %14.3e %14.3e%n", queueSize, hyperPeriod,
+                        distance(dtmc, reference), residual(dtmc, pkj), distance(transient_, reference),
+                        residual(transient_, pkj));
+            }
+        }
+    }
+
+    private static int[] parse(String values) {
+        return Arrays.stream(values.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /*
+     * It solves pi (P - I) = 0 with the sum of pi equal to one, replacing the
+     * last equation with the normalization.
+     */
+    private static double[] solve(double[][] p) {
+        int n = p.length;
+        double[][] a = new double[n][n + 1];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                // row i of the system is column i of P - I
+                a[i][j] = p[j][i] - (i == j ? 1. : 0.);
+            }
+        }
+        Arrays.fill(a[n - 1], 1.);
+
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(a[row][col]) > Math.abs(a[pivot][col]))
+                    pivot = row;
+            }
+            double[] tmp = a[col];
+            a[col] = a[pivot];
+            a[pivot] = tmp;
+            for (int row = col + 1; row < n; row++) {
+                double factor = a[row][col] / a[col][col];
+                for (int k = col; k <= n; k++) {
+                    a[row][k] -= factor * a[col][k];
+                }
+            }
+        }
+
+        double[] pi = new double[n];
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = a[row][n];
+            for (int k = row + 1; k < n; k++) {
+                sum -= a[row][k] * pi[k];
+            }
+            pi[row] = sum / a[row][row];
+        }
+        return pi;
+    }
+
+    private static double distance(double[] x, double[] y) {
+        double distance = 0;
+        for (int i = 0; i < x.length; i++) {
+            distance += Math.abs(x[i] - y[i]);
+        }
+        return distance;
+    }
+
+    private static double residual(double[] pi, double[][] p) {
+        double residual = 0;
+        for (int j = 0; j < pi.length; j++) {
+            double next = 0;
+            for (int k = 0; k < pi.length; k++) {
+                next += pi[k] * p[k][j];
+            }
+            residual += Math.abs(next - pi[j]);
+        }
+        return residual;
+    }
+
+}
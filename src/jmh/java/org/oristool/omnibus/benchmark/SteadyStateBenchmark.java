@@ -0,0 +1,139 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.benchmark;
+
+import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.intersection.analysis.DTMCSteadyStateAnalyzer;
+import org.oristool.omnibus.intersection.analysis.TransientSteadyStateAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.MMSS_QueueAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures the steady state paths of a car flow: the construction of the
+ * pkj matrix alone, and the whole {@link DTMCSteadyStateAnalyzer} and
+ * {@link TransientSteadyStateAnalyzer}, which both build the matrix and then
+ * solve the chain. The cost of a solver is the difference between its path
+ * and the pkj construction.
+ * <p>
+ * The flow has an M/M/S/S queue behind a semaphore green for 40% of its
+ * period, and the period is the hyperperiod of the analysis. The main method
+ * runs the benchmarks with the gc profiler, to report the allocation rate of
+ * each path; {@link SteadyStateAccuracy} compares the distributions they
+ * compute.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SteadyStateBenchmark {
+
+    /**
+     * The bound used for {@link TransientSteadyStateAnalyzer}, as in the
+     * experiments.
+     */
+    public static final double EPSILON = 0.00001;
+
+    @Param({"10", "50", "100", "250", "500"})
+    public int queueSize;
+
+    @Param({"60", "110", "220", "600"})
+    public int hyperPeriod;
+
+    @Param({"0.1"})
+    public String timeStep;
+
+    private CarFlow carFlow;
+    private BigDecimal step;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.step = new BigDecimal(timeStep);
+        this.carFlow = carFlow(queueSize, hyperPeriod, step);
+    }
+
+    /**
+     * It builds the car flow of the benchmarks.
+     *
+     * @param queueSize   the maximum number of cars in the queue
+     * @param hyperPeriod the period of the semaphore, in seconds
+     * @param timeStep    the temporal resolution
+     * @return the car flow
+     */
+    public static CarFlow carFlow(int queueSize, int hyperPeriod, BigDecimal timeStep) {
+        CarFlow carFlow = new CarFlow("benchmark");
+        carFlow.setQueue(BenchmarkScenarios.queue(queueSize, new BigDecimal("0.1")));
+        carFlow.addObstacle(BenchmarkScenarios.semaphore(hyperPeriod, hyperPeriod * 2 / 5, timeStep));
+        return carFlow;
+    }
+
+    @Benchmark
+    public double[][] pkjMatrix() {
+        return BenchmarkScenarios.pkjMatrix(carFlow, new MMSS_QueueAnalyzer(), step);
+    }
+
+    @Benchmark
+    public double[] dtmcSteadyState() {
+        return new DTMCSteadyStateAnalyzer().getSteadyStateDistribution(carFlow, new MMSS_QueueAnalyzer(), step);
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public double[] transientSteadyState() {
+        return new TransientSteadyStateAnalyzer(EPSILON).getSteadyStateDistribution(carFlow,
+                new MMSS_QueueAnalyzer(), step);
+    }
+
+    /**
+     * It runs the benchmarks of this class with the gc profiler. The arguments
+     * are JMH options, e.g. "-p queueSize=100".
+     *
+     * @param args the JMH options
+     * @throws RunnerException             if the benchmarks fail
+     * @throws CommandLineOptionException if the options cannot be parsed
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(SteadyStateBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,234 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.benchmark;
+
+import org.oristool.analyzer.Succession;
+import org.oristool.analyzer.policy.EnumerationPolicy;
+import org.oristool.math.OmegaBigDecimal;
+import org.oristool.models.stpn.trans.TreeTransient;
+import org.oristool.models.stpn.trees.TruncationPolicy;
+import org.oristool.omnibus.tram.TramCrossing;
+import org.oristool.omnibus.tram.TramLine;
+import org.oristool.omnibus.tram.TramTrack;
+import org.oristool.omnibus.tram.analysis.ParallelGreenProbabilityVisitor;
+import org.oristool.omnibus.tram.pn.PetriNetTramTrack;
+import org.oristool.omnibus.tram.pn.PetriNetTramTrackBuilder;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures the analysis of the green probability of a tram crossing,
+ * {@link TramCrossing#analyze} with a {@link ParallelGreenProbabilityVisitor},
+ * on a {@link TramLine} of basic Petri net tracks. The grid covers the number
+ * of tracks, the widths of the uniform windows of the delay and of the leaving
+ * time, and the time step. Tracks are either copies of the same track with
+ * evenly spread phases, which the visitor analyzes once and shifts in time, or
+ * tracks with different delay windows, each analyzed on its own.
+ * <p>
+ * Each analysis takes seconds, so each measurement is a single shot. Besides
+ * the wall time, two counters are reported per shot: the peak heap, as the sum
+ * of the peak usage of the heap memory pools, and the number of nodes of the
+ * sirio transient trees. The nodes are counted once per trial, repeating the
+ * analysis of each distinct track with a counting enumeration policy, since
+ * the visitor does not expose its trees.
+ * <p>
+ * The sweep benchmark serves the availability at the time step and at two
+ * coarser multiples of it with
+ * {@link TramCrossing#analyze(org.oristool.omnibus.tram.analysis.GreenProbabilityVisitor, BigDecimal, BigDecimal)},
+ * which analyzes the tram line once at the finest step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TramGreenProbabilityBenchmark {
+
+    private static final BigInteger PERIOD = BigInteger.valueOf(220);
+    private static final BigInteger CROSSLIGHT_ANT = BigInteger.valueOf(5);
+    private static final BigInteger LEAVING_EF = BigInteger.valueOf(6);
+    private static final int[] SWEEP_RATIOS = {1, 2, 4};
+
+    @Param({"1", "2", "4"})
+    public int trackCount;
+
+    @Param({"40", "120"})
+    public int delayLF;
+
+    @Param({"10", "14"})
+    public int leavingLF;
+
+    @Param({"0.2", "0.1", "0.05"})
+    public String timeStep;
+
+    @Param({"false", "true"})
+    public boolean distinctTracks;
+
+    private BigDecimal step;
+    private TramLine tramLine;
+    private long treeNodes;
+
+    /**
+     * The counters reported with the wall time of each shot.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public double peakHeapMB;
+        public long treeNodes;
+
+        @Setup(Level.Iteration)
+        public void resetPeaks() {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP)
+                    pool.resetPeakUsage();
+            }
+            peakHeapMB = 0;
+            treeNodes = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void readPeaks() {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP)
+                    peak += pool.getPeakUsage().getUsed();
+            }
+            peakHeapMB = peak / (1024. * 1024.);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.step = new BigDecimal(timeStep);
+        this.tramLine = new TramLine("line");
+        for (int i = 0; i < trackCount; i++) {
+            BigInteger phase = PERIOD.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(trackCount));
+            BigInteger delay = BigInteger.valueOf(distinctTracks ? delayLF + 10 * i : delayLF);
+            tramLine.addTramTrack(PetriNetTramTrackBuilder.getInstance("bin" + i, PERIOD, phase, BigInteger.ZERO,
+                    delay, CROSSLIGHT_ANT, LEAVING_EF, BigInteger.valueOf(leavingLF)));
+        }
+        this.treeNodes = countTreeNodes(tramLine, step);
+    }
+
+    @Benchmark
+    public TramCrossing analyze(Counters counters) {
+        TramCrossing tramCrossing = new TramCrossing(tramLine);
+        tramCrossing.analyze(new ParallelGreenProbabilityVisitor(), step);
+        counters.treeNodes = treeNodes;
+        return tramCrossing;
+    }
+
+    /**
+     * It sweeps the time step over the benchmark one and its double and quadruple,
+     * as a scenario comparing temporal resolutions would, analyzing the tram line
+     * once at the finest step and resampling its availability to the others.
+     *
+     * @param counters the counters of the shot
+     * @return the analyzed crossing
+     */
+    @Benchmark
+    public TramCrossing analyzeSweep(Counters counters) {
+        TramCrossing tramCrossing = new TramCrossing(tramLine);
+        for (int ratio : SWEEP_RATIOS) {
+            tramCrossing.analyze(new ParallelGreenProbabilityVisitor(), step.multiply(BigDecimal.valueOf(ratio)), step);
+        }
+        counters.treeNodes = treeNodes;
+        return tramCrossing;
+    }
+
+    /*
+     * It repeats the transient analysis that the visitor runs for each distinct
+     * track, i.e. the one of its zero phase copy over its hyperperiod, counting
+     * the nodes added to the tree.
+     */
+    private static long countTreeNodes(TramLine tramLine, BigDecimal timeStep) {
+        Map<Object, PetriNetTramTrack> distinctTracks = new LinkedHashMap<>();
+        for (TramTrack tramTrack : tramLine.getTramTracks()) {
+            PetriNetTramTrack track = (PetriNetTramTrack) tramTrack;
+            PetriNetTramTrack zeroPhaseTrack = track.getZeroPhaseTrack();
+            if (track.getPhaseInvariantKey() == null || zeroPhaseTrack == null)
+                distinctTracks.put(track, track);
+            else
+                distinctTracks.putIfAbsent(track.getPhaseInvariantKey(), zeroPhaseTrack);
+        }
+
+        long nodes = 0;
+        for (PetriNetTramTrack track : distinctTracks.values()) {
+            PetriNetTramTrack.Model model = track.buildModel();
+            BigDecimal timeBound = new BigDecimal(track.getHyperPeriod());
+            CountingPolicy policy = new CountingPolicy(timeBound);
+            TreeTransient.builder().timeBound(timeBound).timeStep(timeStep).policy(() -> policy).build()
+                    .compute(model.getPetriNet(), model.getMarking());
+            nodes += policy.added;
+        }
+        return nodes;
+    }
+
+    // the greedy policy of the visitor, counting the nodes it enumerates
+    private static class CountingPolicy implements EnumerationPolicy {
+
+        private final TruncationPolicy policy;
+        private long added;
+
+        CountingPolicy(BigDecimal timeBound) {
+            this.policy = new TruncationPolicy(BigDecimal.ZERO, new OmegaBigDecimal(timeBound));
+        }
+
+        @Override
+        public void add(Succession succession) {
+            added++;
+            policy.add(succession);
+        }
+
+        @Override
+        public Succession remove() {
+            return policy.remove();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return policy.isEmpty();
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.benchmark;
+
+import org.oristool.omnibus.benchmark.BenchmarkScenarios.Availability;
+import org.oristool.omnibus.vehicle.BaseQueue;
+import org.oristool.omnibus.vehicle.analysis.FloatMMSS_QueueAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.FloatTransientAnalyzer.Arithmetic;
+import org.oristool.omnibus.vehicle.analysis.MMSS_QueueAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.TransientAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.TransientAnalyzer.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It measures the transient kernels of the queues, {@link TransientAnalyzer}
+ * and {@link MMSS_QueueAnalyzer}, across queue sizes, horizons, numbers of
+ * denials and time steps, and the single precision variant
+ * {@link FloatMMSS_QueueAnalyzer} in both its arithmetics. The availability vectors are built from a
+ * {@code CarSemaphore} and a {@code TramCrossing} before the measurement.
+ * <p>
+ * Single points of the grid can be selected with JMH options, e.g.
+ * {@code -Djmh.args="TransientKernelBenchmark -p queueSize=31 -p maxDenials=0"},
+ * and the checks of the probabilities with e.g. {@code -p validation=OFF}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransientKernelBenchmark {
+
+    @Param({"10", "31", "100"})
+    public int queueSize;
+
+    @Param({"110", "440"})
+    public int horizonSeconds;
+
+    @Param({"0", "3"})
+    public int maxDenials;
+
+    @Param({"0.1", "0.05"})
+    public String timeStep;
+
+    @Param({"SEMAPHORE", "SEMAPHORE_AND_TRAM"})
+    public Availability availability;
+
+    @Param({"STRICT"})
+    public Validation validation;
+
+    private BaseQueue queue;
+    private double[] availabilityVector;
+    private double step;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BigDecimal timeStep = new BigDecimal(this.timeStep);
+        this.queue = BenchmarkScenarios.queue(queueSize, new BigDecimal("0.1"));
+        this.availabilityVector = BenchmarkScenarios.availability(availability, horizonSeconds, timeStep);
+        this.step = timeStep.doubleValue();
+    }
+
+    @Benchmark
+    public double[][][] transientAnalyzer() {
+        return new TransientAnalyzer().setValidation(validation).analyze(queue, availabilityVector, maxDenials, step)
+                .getStateMatrix();
+    }
+
+    @Benchmark
+    public double[][][] mmssQueueAnalyzer() {
+        return new MMSS_QueueAnalyzer().setValidation(validation).analyze(queue, availabilityVector, maxDenials, step)
+                .getStateMatrix();
+    }
+
+    @Benchmark
+    public float[][] floatMmssQueueAnalyzer() {
+        return new FloatMMSS_QueueAnalyzer().setValidation(validation)
+                .analyze(queue, availabilityVector, maxDenials, step).getFloatStateMatrix();
+    }
+
+    @Benchmark
+    public float[][] floatArithmeticMmssQueueAnalyzer() {
+        return new FloatMMSS_QueueAnalyzer().setArithmetic(Arithmetic.FLOAT).setValidation(validation)
+                .analyze(queue, availabilityVector, maxDenials, step).getFloatStateMatrix();
+    }
+
+}
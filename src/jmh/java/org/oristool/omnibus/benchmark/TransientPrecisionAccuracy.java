@@ -0,0 +1,127 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.benchmark;
+
+import org.oristool.omnibus.benchmark.BenchmarkScenarios.Availability;
+import org.oristool.omnibus.vehicle.BaseQueue;
+import org.oristool.omnibus.vehicle.analysis.FloatMMSS_QueueAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.FloatTransientAnalyzer.Arithmetic;
+import org.oristool.omnibus.vehicle.analysis.MMSS_QueueAnalyzer;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * It compares the single precision analyses of {@link FloatMMSS_QueueAnalyzer}
+ * with the double precision one of {@link MMSS_QueueAnalyzer}, on the
+ * availability of a semaphore and a tram crossing. For each arithmetic it
+ * prints the maximum absolute error on the state probabilities and on the
+ * expected number of cars along time, and the estimated size of the state
+ * matrices with compressed references.
+ * <p>
+ * The optional arguments are the comma-separated queue sizes, horizons in
+ * seconds and numbers of denials, e.g. "10,100 440,2200 0,3".
+ */
+public class TransientPrecisionAccuracy {
+
+    public static void main(String[] args) {
+        int[] queueSizes = args.length > 0 ? parse(args[0]) : new int[] {10, 31, 100};
+        int[] horizons = args.length > 1 ? parse(args[1]) : new int[] {440, 2200};
+        int[] denials = args.length > 2 ? parse(args[2]) : new int[] {0, 3};
+        BigDecimal timeStep = new BigDecimal("0.1");
+
+        System.out.printf("%9s %8s %7s %10s %14s %14s %10s %10s%n", "queueSize", "horizon", "denials", "arithmetic",
+                "stateError", "expectedError", "doubleMB", "floatMB");
+        for (int horizon : horizons) {
+            double[] availability = BenchmarkScenarios.availability(Availability.SEMAPHORE_AND_TRAM, horizon,
+                    timeStep);
+            for (int queueSize : queueSizes) {
+                BaseQueue queue = BenchmarkScenarios.queue(queueSize, new BigDecimal("0.1"));
+                for (int maxDenials : denials) {
+                    double[][][] reference = new MMSS_QueueAnalyzer()
+                            .analyze(queue, availability, maxDenials, timeStep.doubleValue()).getStateMatrix();
+                    for (Arithmetic arithmetic : Arithmetic.values()) {
+                        float[][] result = new FloatMMSS_QueueAnalyzer().setArithmetic(arithmetic)
+                                .analyze(queue, availability, maxDenials, timeStep.doubleValue())
+                                .getFloatStateMatrix();
+                        System.out.printf("%9d %8d %7d %10s %14.3e %14.3e %10.1f %10.1f%n", queueSize, horizon,
+                                maxDenials, arithmetic, stateError(reference, result),
+                                expectedError(reference, result), doubleBytes(reference) / 1e6,
+                                floatBytes(result) / 1e6);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] parse(String values) {
+        return Arrays.stream(values.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static double stateError(double[][][] reference, float[][] result) {
+        double error = 0;
+        for (int t = 0; t < reference.length; t++) {
+            int width = reference[t][0].length;
+            for (int n = 0; n < reference[t].length; n++) {
+                for (int d = 0; d < width; d++) {
+                    error = Math.max(error, Math.abs(reference[t][n][d] - result[t][n * width + d]));
+                }
+            }
+        }
+        return error;
+    }
+
+    private static double expectedError(double[][][] reference, float[][] result) {
+        double error = 0;
+        for (int t = 0; t < reference.length; t++) {
+            int width = reference[t][0].length;
+            double expected = 0;
+            double floatExpected = 0;
+            for (int n = 0; n < reference[t].length; n++) {
+                for (int d = 0; d < width; d++) {
+                    expected += reference[t][n][d] * n;
+                    floatExpected += result[t][n * width + d] * n;
+                }
+            }
+            error = Math.max(error, Math.abs(expected - floatExpected));
+        }
+        return error;
+    }
+
+    private static long doubleBytes(double[][][] matrix) {
+        long bytes = arrayBytes(matrix.length, 4);
+        for (double[][] step : matrix) {
+            bytes += arrayBytes(step.length, 4) + step.length * arrayBytes(step[0].length, 8);
+        }
+        return bytes;
+    }
+
+    private static long floatBytes(float[][] matrix) {
+        long bytes = arrayBytes(matrix.length, 4);
+        for (float[] step : matrix) {
+            bytes += arrayBytes(step.length, 4);
+        }
+        return bytes;
+    }
+
+    // a 16 bytes header, aligned to 8 bytes
+    private static long arrayBytes(int length, int elementBytes) {
+        return (16 + (long) length * elementBytes + 7) / 8 * 8;
+    }
+
+}
@@ -18,8 +18,17 @@
 package org.oristool.omnibus.intersection;
 
 import org.oristool.omnibus.intersection.analysis.SteadyStateAnalyzer;
+import org.oristool.omnibus.metrics.AnalysisCounter;
+import org.oristool.omnibus.metrics.AnalysisStage;
+import org.oristool.omnibus.metrics.Metrics;
+import org.oristool.omnibus.metrics.MetricsRegistry;
+import org.oristool.omnibus.utils.MathUtils;
 import org.oristool.omnibus.utils.OmnibusMath;
 import org.oristool.omnibus.vehicle.BaseQueue;
+import org.oristool.omnibus.vehicle.analysis.BatchQueueAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.FloatTransientAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.MMSS_QueueAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.StateProbabilities;
 import org.oristool.omnibus.vehicle.analysis.TransientAnalyzer;
 
 import java.math.BigDecimal;
@@ -38,12 +47,13 @@ import java.util.List;
  */
 public class CarFlow {
 
+    private static final int AVAILABILITY_BLOCK_SIZE = 2048;
+
     private String name;
     private BaseQueue queue;
     private List<Obstacle> obstacles;
     private boolean queueAnalyzed;
-    private double[][][] stateProbabilitiesAlongTime;
-    private int maxDenials;
+    private StateProbabilities stateProbabilities;
     private boolean steadyStateAnalyzed;
     private double[] steadyStateDistribution;
 
@@ -101,12 +111,29 @@ public class CarFlow {
      */
     public double[] getIntersectionAvailability(int steps) {
         double[] intAv = new double[steps];
-        for (int i = 0; i < steps; i++) {
-            intAv[i] = 1;
-            for (Obstacle o : obstacles) {
-                intAv[i] = intAv[i] * o.getAvailability(i);
+        if (obstacles.isEmpty()) {
+            Arrays.fill(intAv, 1.);
+            return intAv;
+        }
+
+        MetricsRegistry metrics = Metrics.getRegistry();
+        long startTime = metrics.startTimer();
+
+        // obstacles are combined one block at a time, so that partial products
+        // stay in cache even for long horizons
+        int blockSize = Math.min(steps, AVAILABILITY_BLOCK_SIZE);
+        double[] block = new double[blockSize];
+        double[] factor = new double[blockSize];
+        for (int start = 0; start < steps; start += blockSize) {
+            int len = Math.min(blockSize, steps - start);
+            obstacles.get(0).copyInto(block, start, len);
+            for (int o = 1; o < obstacles.size(); o++) {
+                obstacles.get(o).copyInto(factor, start, len);
+                MathUtils.multiplyInto(block, factor, len);
             }
+            System.arraycopy(block, 0, intAv, start, len);
         }
+        metrics.stopTimer(AnalysisStage.AVAILABILITY, startTime);
         return intAv;
     }
 
@@ -126,6 +153,9 @@ public class CarFlow {
     /**
      * It starts the analysis of the queue, it computes the state probabilities along
      * time. It assumes that the intersection availability was already computed.
+     * <p>
+     * The results of a {@link FloatTransientAnalyzer} are kept in single
+     * precision.
      *
      * @param analyzer   the queue analyzer that will do the analysis
      * @param maxDenials the max number of denials of which compute probabilities
@@ -136,16 +166,46 @@ public class CarFlow {
     public CarFlow analyzeQueueWithDenials(TransientAnalyzer analyzer, int maxDenials, BigInteger timeBound, BigDecimal timeStep) {
         isInitialized();
 
-        this.maxDenials = maxDenials;
-        this.stateProbabilitiesAlongTime = analyzer
-                .analyze(queue, getIntersectionAvailability(new BigDecimal(timeBound).divide(timeStep).intValue()),
-                        maxDenials, timeStep.doubleValue())
-                .getStateMatrix();
+        this.stateProbabilities = analyzer.analyze(queue,
+                getIntersectionAvailability(new BigDecimal(timeBound).divide(timeStep).intValue()),
+                maxDenials, timeStep.doubleValue()).getStateProbabilities();
         this.queueAnalyzed = true;
 
         return this;
     }
 
+    /**
+     * It analyzes the queues of many flows together, over the same horizon, as
+     * {@link #analyzeQueue(TransientAnalyzer, BigInteger, BigDecimal)} would do
+     * for each flow with a {@link MMSS_QueueAnalyzer}.
+     * <p>
+     * Denials are not supported in batch mode: the flows are analyzed as with
+     * a max number of denials of zero, so that
+     * {@link #getDenialsProbabilityAlongTime(int)} accepts only zero.
+     *
+     * @param analyzer  the batch analyzer that will do the analysis
+     * @param timeBound the temporal limit until which the analysis will be done
+     * @param timeStep  the temporal resolution with which the analysis will be done
+     * @param carFlows  the flows to analyze
+     */
+    public static void analyzeQueues(BatchQueueAnalyzer analyzer, BigInteger timeBound, BigDecimal timeStep,
+                                     CarFlow... carFlows) {
+        int steps = new BigDecimal(timeBound).divide(timeStep).intValue();
+        BaseQueue[] queues = new BaseQueue[carFlows.length];
+        double[][] availabilities = new double[carFlows.length][];
+        for (int f = 0; f < carFlows.length; f++) {
+            carFlows[f].isInitialized();
+            queues[f] = carFlows[f].queue;
+            availabilities[f] = carFlows[f].getIntersectionAvailability(steps);
+        }
+
+        analyzer.analyze(queues, availabilities, timeStep.doubleValue());
+        for (int f = 0; f < carFlows.length; f++) {
+            carFlows[f].stateProbabilities = analyzer.getStateProbabilities(f);
+            carFlows[f].queueAnalyzed = true;
+        }
+    }
+
     /**
      * It starts the analysis of the steady state of the distribution of the number
      * of cars in the queue at the beginning of every hyper period.
@@ -161,6 +221,7 @@ public class CarFlow {
         isInitialized();
 
         this.steadyStateDistribution = steadyStateAnalyzer.getSteadyStateDistribution(this, queueAnalyzer, timeStep);
+        Metrics.getRegistry().increment(AnalysisCounter.STEADY_STATE_ANALYSES, 1);
         this.steadyStateAnalyzed = true;
 
         return this;
@@ -176,11 +237,9 @@ public class CarFlow {
      */
     public double[] getStateProbabilities(int time) {
         checkAnalysis();
-        double[] ret = new double[stateProbabilitiesAlongTime[0].length];
+        double[] ret = new double[stateProbabilities.getStates()];
         for (int i = 0; i < ret.length; i++) {
-            for (int d = 0; d <= maxDenials; d++) {
-                ret[i] += stateProbabilitiesAlongTime[time][i][d];
-            }
+            ret[i] = stateProbabilities.get(time, i);
         }
         return ret;
     }
@@ -195,10 +254,10 @@ public class CarFlow {
      */
     public double[] getTimeProbabilities(int state) {
         checkAnalysis();
-        double[] ret = new double[stateProbabilitiesAlongTime.length];
+        double[] ret = new double[stateProbabilities.getSteps()];
         for (int t = 0; t < ret.length; t++) {
-            for (int d = 0; d <= maxDenials; d++) {
-                ret[t] = stateProbabilitiesAlongTime[t][state][d];
+            for (int d = 0; d <= stateProbabilities.getMaxDenials(); d++) {
+                ret[t] = stateProbabilities.get(t, state, d);
             }
         }
         return ret;
@@ -223,38 +282,67 @@ public class CarFlow {
      */
     public double[] getExpectedStateAlongTime() {
         checkAnalysis();
-        double[] eDimCoda = new double[this.stateProbabilitiesAlongTime.length];
+        double[] eDimCoda = new double[stateProbabilities.getSteps()];
         double accum = 0.0;
-        for (int t = 0; t < this.stateProbabilitiesAlongTime.length; t++) {
+        for (int t = 0; t < eDimCoda.length; t++) {
             accum = 0.0;
-            for (int c = 0; c < this.stateProbabilitiesAlongTime[0].length; c++) {
-                double accum2 = 0.0;
-                for (int d = 0; d <= maxDenials; d++) {
-                    accum2 += this.stateProbabilitiesAlongTime[t][c][d];
-                }
-                accum += accum2 * c;
+            for (int c = 0; c < stateProbabilities.getStates(); c++) {
+                accum += stateProbabilities.get(t, c) * c;
             }
             eDimCoda[t] = accum;
         }
         return eDimCoda;
     }
 
+    /**
+     * It returns the metrics of the analyzed queue: expected number of cars and
+     * probability of a full queue, as maximum and mean along time, computed in a
+     * single pass over the state probabilities.
+     *
+     * @return the metrics of the flow
+     */
+    public FlowMetrics getFlowMetrics() {
+        checkAnalysis();
+        int queueSize = queue.getSize().intValue();
+        double maxExpectedState = Double.NEGATIVE_INFINITY;
+        double sumExpectedState = 0.0;
+        double maxBlockProbability = 0.0;
+        double sumBlockProbability = 0.0;
+        int steps = stateProbabilities.getSteps();
+        int states = stateProbabilities.getStates();
+        for (int t = 0; t < steps; t++) {
+            double accum = 0.0;
+            for (int c = 0; c < states; c++) {
+                accum += stateProbabilities.get(t, c) * c;
+            }
+            double blockProbability = stateProbabilities.get(t, queueSize);
+            maxExpectedState = Math.max(maxExpectedState, accum);
+            sumExpectedState += accum;
+            maxBlockProbability = Math.max(maxBlockProbability, blockProbability);
+            sumBlockProbability += blockProbability;
+        }
+        return new FlowMetrics(queueSize, queue.getArrivalDistribution().getLambda().doubleValue(),
+                maxExpectedState, sumExpectedState / steps, maxBlockProbability, sumBlockProbability / steps);
+    }
+
     /**
      * It returns the probabilities along time to have at least "k" denials, where k is the input.
      *
      * @param denials the number of denials which we are interested in
      */
     public double[] getDenialsProbabilityAlongTime(int denials) {
+        checkAnalysis();
+        int maxDenials = stateProbabilities.getMaxDenials();
         if (denials > maxDenials)
             throw new IllegalArgumentException("denials greater than maxDenials computed");
 
-        double[] denialsProbabilityAlongTime = new double[this.stateProbabilitiesAlongTime.length];
+        double[] denialsProbabilityAlongTime = new double[stateProbabilities.getSteps()];
         double accum = 0.0;
-        for (int t = 0; t < this.stateProbabilitiesAlongTime.length; t++) {
+        for (int t = 0; t < denialsProbabilityAlongTime.length; t++) {
             accum = 0.0;
-            for (int c = 0; c < this.stateProbabilitiesAlongTime[0].length; c++) {
+            for (int c = 0; c < stateProbabilities.getStates(); c++) {
                 for (int d = denials; d <= maxDenials; d++) {
-                    accum += this.stateProbabilitiesAlongTime[t][c][d];
+                    accum += stateProbabilities.get(t, c, d);
                 }
             }
             denialsProbabilityAlongTime[t] = accum;
@@ -309,7 +397,7 @@ public class CarFlow {
 
     private void reset() {
         this.queueAnalyzed = false;
-        this.stateProbabilitiesAlongTime = null;
+        this.stateProbabilities = null;
         this.steadyStateAnalyzed = false;
         this.steadyStateDistribution = null;
     }
@@ -357,7 +445,7 @@ public class CarFlow {
     @Override
     public String toString() {
         return "CarFlow [name=" + name + ", queue=" + queue + ", obstacles=" + obstacles + ", queueAnalyzed="
-                + queueAnalyzed + ", stateProbabilitiesAlongTime=" + Arrays.toString(stateProbabilitiesAlongTime)
+                + queueAnalyzed + ", stateProbabilities=" + stateProbabilities
                 + ", steadyStateAnalyzed=" + steadyStateAnalyzed + ", steadyStateDistribution="
                 + Arrays.toString(steadyStateDistribution) + "]";
     }
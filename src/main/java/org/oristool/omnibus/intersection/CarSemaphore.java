@@ -21,15 +21,23 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
 import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * This class is a specification of an Obstacle. It models the normal cycle of a
  * traffic light for a cars queue. The semaphore is always red by default.
+ * <p>
+ * The plan is stored as a bit set of the green time steps of one period, so
+ * that colour changes and queries cost in the number of switches rather than in
+ * the number of time steps.
  */
 public class CarSemaphore extends Obstacle {
 
 	private final BigInteger period;
 	private final BigDecimal timeStep;
+	private final int periodSteps;
+	private final int stepsPerSecond;
+	private final BitSet green;
 
 	/**
 	 * The constructor. The semaphore is always red by default.
@@ -41,8 +49,68 @@ public class CarSemaphore extends Obstacle {
 	public CarSemaphore(BigInteger period, BigDecimal timeStep) {
 		this.period = period;
 		this.timeStep = timeStep;
-		this.availability = new double[new BigDecimal(period).divide(timeStep, 0, RoundingMode.FLOOR).intValue()];
-		Arrays.fill(this.availability, 0.);
+		this.periodSteps = new BigDecimal(period).divide(timeStep, 0, RoundingMode.FLOOR).intValue();
+		BigDecimal steps = BigDecimal.ONE.divide(timeStep, 0, RoundingMode.FLOOR);
+		this.stepsPerSecond = steps.multiply(timeStep).compareTo(BigDecimal.ONE) == 0 ? steps.intValue() : -1;
+		this.green = new BitSet(periodSteps);
+	}
+
+	/**
+	 * It applies a whole schedule to the semaphores of some flows in one pass:
+	 * each semaphore is green in the slots of its flow and red elsewhere. The
+	 * slots are converted to temporal steps as in
+	 * {@link #setGreenSeconds(int, int)}.
+	 *
+	 * @param schedule      an array of pairs {@code [flow0, seconds0, flow1,
+	 *                      seconds1, ...]} of consecutive slots, each with the id
+	 *                      of the flow that is green and its duration in seconds;
+	 *                      a negative flow id means red for all flows
+	 * @param carSemaphores the semaphores, indexed by flow id
+	 * @throws IllegalArgumentException if a slot serves a flow with no semaphore
+	 */
+	public static void applySchedule(int[] schedule, CarSemaphore... carSemaphores) {
+		if (schedule.length % 2 != 0)
+			throw new IllegalArgumentException("schedule must contain pairs of flow ids and durations.");
+		for (int i = 0; i < schedule.length; i += 2) {
+			if (schedule[i] >= carSemaphores.length)
+				throw new IllegalArgumentException("Flow " + schedule[i] + " has no semaphore, only "
+						+ carSemaphores.length + " were given.");
+		}
+		for (CarSemaphore carSemaphore : carSemaphores) {
+			carSemaphore.green.clear();
+		}
+		int start = 0;
+		for (int i = 0; i < schedule.length; i += 2) {
+			int end = start + schedule[i + 1];
+			if (schedule[i] >= 0)
+				carSemaphores[schedule[i]].setGreenSeconds(start, end);
+			start = end;
+		}
+	}
+
+	/**
+	 * This set the traffic light to be green at certain time. It is the same as
+	 * {@link #setGreen(BigInteger, BigInteger)}, without BigDecimal divisions when
+	 * a second is a whole number of temporal steps.
+	 *
+	 * @param start the second at which the traffic light starts to be green
+	 * @param end   the second at which the traffic light will turn red
+	 */
+	public void setGreenSeconds(int start, int end) {
+		if (stepsPerSecond < 0) {
+			setGreen(BigInteger.valueOf(start), BigInteger.valueOf(end));
+			return;
+		}
+		if (start < 0)
+			throw new IllegalArgumentException("start must be at least zero.");
+		if (end <= start)
+			throw new IllegalArgumentException("end must be greater then start.");
+		if (end > period.intValue())
+			throw new IllegalArgumentException("end must be lower then period, at most equal.");
+		int startStep = start * stepsPerSecond;
+		int endStep = Math.min(this.periodSteps, end * stepsPerSecond);
+		if (startStep < endStep)
+			this.green.set(startStep, endStep);
 	}
 
 	// Utils
@@ -57,10 +125,9 @@ public class CarSemaphore extends Obstacle {
 		checkStartEnd(start,end);
 
 		int startStep = new BigDecimal(start).divide(timeStep, 0, RoundingMode.FLOOR).intValue();
-		int endStep = Math.min(this.availability.length, new BigDecimal(end).divide(timeStep, 0, RoundingMode.FLOOR).intValue());
-		for (int i = startStep; i < endStep; i++) {
-			this.availability[i] = 1.;
-		}
+		int endStep = Math.min(this.periodSteps, new BigDecimal(end).divide(timeStep, 0, RoundingMode.FLOOR).intValue());
+		if (startStep < endStep)
+			this.green.set(startStep, endStep);
 	}
 
 	/**
@@ -78,10 +145,9 @@ public class CarSemaphore extends Obstacle {
 			throw new IllegalArgumentException("end must be lower then period, at most equal.");
 
 		int startStep = new BigDecimal(start).divide(timeStep, 0, RoundingMode.FLOOR).intValue();
-		int endStep = Math.min(this.availability.length, new BigDecimal(end).divide(timeStep, 0, RoundingMode.FLOOR).intValue());
-		for (int i = startStep; i < endStep; i++) {
-			this.availability[i] = 0.;
-		}
+		int endStep = Math.min(this.periodSteps, new BigDecimal(end).divide(timeStep, 0, RoundingMode.FLOOR).intValue());
+		if (startStep < endStep)
+			this.green.clear(startStep, endStep);
 	}
 
 	/**
@@ -92,15 +158,8 @@ public class CarSemaphore extends Obstacle {
 	 * @param endStep   the temporal step at which the traffic light will turn red
 	 */
 	public void setGreen(int startStep, int endStep) {
-		if (startStep < 0)
-			throw new IllegalArgumentException("startStep must be at least zero.");
-		if (endStep <= startStep)
-			throw new IllegalArgumentException("endStep must be greater then startStep.");
-		if (endStep > this.availability.length)
-			throw new IllegalArgumentException("endStep must be lower then periodSteps, at most equal.");
-		for (int i = startStep; i < endStep; i++) {
-			this.availability[i] = 1.;
-		}
+		checkStartEndSteps(startStep, endStep);
+		this.green.set(startStep, endStep);
 	}
 
 	/**
@@ -111,15 +170,34 @@ public class CarSemaphore extends Obstacle {
 	 * @param endStep   the temporal step at which the traffic light will turn green
 	 */
 	public void setRed(int startStep, int endStep) {
-		if (startStep < 0)
-			throw new IllegalArgumentException("startStep must be at least zero.");
-		if (endStep <= startStep)
-			throw new IllegalArgumentException("endStep must be greater then startStep.");
-		if (endStep > this.availability.length)
-			throw new IllegalArgumentException("endStep must be lower then periodSteps, at most equal.");
-		for (int i = startStep; i < endStep; i++) {
-			this.availability[i] = 0.;
+		checkStartEndSteps(startStep, endStep);
+		this.green.clear(startStep, endStep);
+	}
+
+	/**
+	 * It returns the green segments of one period of the plan.
+	 *
+	 * @return an array of pairs of temporal steps, {@code [start0, end0, start1,
+	 *         end1, ...]}, where each segment starts to be green at the first step
+	 *         and turns red at the second one
+	 */
+	public int[] getGreenSegments() {
+		int[] segments = new int[2 * green.cardinality()];
+		int count = 0;
+		for (int start = green.nextSetBit(0); start >= 0; start = green.nextSetBit(start)) {
+			int end = green.nextClearBit(start);
+			segments[count++] = start;
+			segments[count++] = end;
+			start = end;
 		}
+		return Arrays.copyOf(segments, count);
+	}
+
+	/**
+	 * @return the number of temporal steps in a period of the semaphore
+	 */
+	public int getPeriodSteps() {
+		return periodSteps;
 	}
 
 	private void checkStartEnd(BigInteger start, BigInteger end) {
@@ -131,16 +209,46 @@ public class CarSemaphore extends Obstacle {
 			throw new IllegalArgumentException("end must be lower then period, at most equal.");
 	}
 
+	private void checkStartEndSteps(int startStep, int endStep) {
+		if (startStep < 0)
+			throw new IllegalArgumentException("startStep must be at least zero.");
+		if (endStep <= startStep)
+			throw new IllegalArgumentException("endStep must be greater then startStep.");
+		if (endStep > this.periodSteps)
+			throw new IllegalArgumentException("endStep must be lower then periodSteps, at most equal.");
+	}
+
 	@Override
 	public Obstacle getClone() {
 		CarSemaphore clone = new CarSemaphore(this.period, this.timeStep);
-		clone.setAvailability(this.availability);
+		clone.green.or(this.green);
 		return clone;
 	}
 
 	@Override
 	public double getAvailability(int timeStep) {
-		return super.getAvailabilityStandard(timeStep);
+		if (timeStep < 0)
+			throw new IllegalArgumentException("Negative timeStep requested.");
+		return this.green.get(timeStep % periodSteps) ? 1. : 0.;
+	}
+
+	@Override
+	public void copyInto(double[] dst, int offset, int len) {
+		if (offset < 0)
+			throw new IllegalArgumentException("Negative timeStep requested.");
+		Arrays.fill(dst, 0, len, 0.);
+		int dstPos = 0;
+		int from = offset % periodSteps;
+		while (dstPos < len) {
+			int to = Math.min(periodSteps, from + len - dstPos);
+			for (int start = green.nextSetBit(from); start >= 0 && start < to; start = green.nextSetBit(start)) {
+				int end = Math.min(to, green.nextClearBit(start));
+				Arrays.fill(dst, dstPos + start - from, dstPos + end - from, 1.);
+				start = end;
+			}
+			dstPos += to - from;
+			from = 0;
+		}
 	}
 
 	@Override
@@ -150,8 +258,8 @@ public class CarSemaphore extends Obstacle {
 
 	@Override
 	public String toString() {
-		return "CarSemaphore [period=" + period + ", timeStep=" + timeStep + ", availability="
-				+ Arrays.toString(availability) + "]";
+		return "CarSemaphore [period=" + period + ", timeStep=" + timeStep + ", greenSegments="
+				+ Arrays.toString(getGreenSegments()) + "]";
 	}
 
 }
@@ -0,0 +1,139 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection;
+
+/**
+ * It collects the metrics of interest of an analyzed car flow, computed in a
+ * single pass over the state probabilities along time (see
+ * {@link CarFlow#getFlowMetrics()}). Means and maxima are taken over the time
+ * steps of the analysis, that should start from the steady state and cover a
+ * hyper period.
+ * <p>
+ * Instances are immutable.
+ */
+public class FlowMetrics {
+
+	private final int queueSize;
+	private final double arrivalRate;
+	private final double maxExpectedQueue;
+	private final double meanExpectedQueue;
+	private final double maxBlockProbability;
+	private final double meanBlockProbability;
+
+	/**
+	 * @param queueSize            the size K of the queue
+	 * @param arrivalRate          the arrival rate of the queue, in vehicles per
+	 *                             second
+	 * @param maxExpectedQueue     the maximum expected number of vehicles in queue
+	 * @param meanExpectedQueue    the mean expected number of vehicles in queue
+	 * @param maxBlockProbability  the maximum probability of a full queue
+	 * @param meanBlockProbability the mean probability of a full queue
+	 */
+	public FlowMetrics(int queueSize, double arrivalRate, double maxExpectedQueue, double meanExpectedQueue,
+			double maxBlockProbability, double meanBlockProbability) {
+		this.queueSize = queueSize;
+		this.arrivalRate = arrivalRate;
+		this.maxExpectedQueue = maxExpectedQueue;
+		this.meanExpectedQueue = meanExpectedQueue;
+		this.maxBlockProbability = maxBlockProbability;
+		this.meanBlockProbability = meanBlockProbability;
+	}
+
+	/**
+	 * @return the size K of the queue
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * @return the arrival rate of the queue, in vehicles per second
+	 */
+	public double getArrivalRate() {
+		return arrivalRate;
+	}
+
+	/**
+	 * @return the maximum expected number of vehicles in queue
+	 */
+	public double getMaxExpectedQueue() {
+		return maxExpectedQueue;
+	}
+
+	/**
+	 * @return the mean expected number of vehicles in queue
+	 */
+	public double getMeanExpectedQueue() {
+		return meanExpectedQueue;
+	}
+
+	/**
+	 * @return the maximum expected number of vehicles in queue, as a fraction of
+	 *         the queue size
+	 */
+	public double getMaxOccupation() {
+		return maxExpectedQueue / queueSize;
+	}
+
+	/**
+	 * It returns the maximum probability of a full queue, i.e. of vehicles
+	 * spilling back beyond the road.
+	 *
+	 * @return the maximum block probability
+	 */
+	public double getMaxBlockProbability() {
+		return maxBlockProbability;
+	}
+
+	/**
+	 * @return the mean probability of a full queue
+	 */
+	public double getMeanBlockProbability() {
+		return meanBlockProbability;
+	}
+
+	/**
+	 * It returns the throughput of the flow, i.e. the rate of the arrivals that
+	 * find room in the queue; in the steady state it is also the rate of the
+	 * vehicles crossing the intersection.
+	 *
+	 * @return the throughput, in vehicles per second
+	 */
+	public double getThroughput() {
+		return arrivalRate * (1. - meanBlockProbability);
+	}
+
+	/**
+	 * It returns the mean time spent in queue by the vehicles that enter it, by
+	 * Little's law.
+	 *
+	 * @return the mean delay, in seconds
+	 */
+	public double getMeanDelay() {
+		double throughput = getThroughput();
+		return throughput > 0 ? meanExpectedQueue / throughput : Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	public String toString() {
+		return "FlowMetrics [maxOccupation=" + getMaxOccupation() + ", meanExpectedQueue=" + meanExpectedQueue
+				+ ", maxBlockProbability=" + maxBlockProbability + ", throughput=" + getThroughput()
+				+ ", meanDelay=" + getMeanDelay() + "]";
+	}
+
+}
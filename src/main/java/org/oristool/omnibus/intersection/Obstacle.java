@@ -24,8 +24,6 @@ import java.math.BigInteger;
  */
 public abstract class Obstacle {
 
-	protected double[] availability;
-
 	// Utils
 
 	/**
@@ -41,6 +39,21 @@ public abstract class Obstacle {
 	 */
 	public abstract double getAvailability(int timeStep);
 
+	/**
+	 * It copies the availability of a window of consecutive temporal indexes into
+	 * the given array, so that {@code dst[i]} is the availability at index
+	 * {@code offset + i}. Subclasses should override it with a bulk copy.
+	 * 
+	 * @param dst    the array to fill, from its first position
+	 * @param offset the temporal index of the first availability to copy
+	 * @param len    the number of temporal indexes to copy
+	 */
+	public void copyInto(double[] dst, int offset, int len) {
+		for (int i = 0; i < len; i++) {
+			dst[i] = getAvailability(offset + i);
+		}
+	}
+
 	/**
 	 * All obstacle should be periodic. 
 	 * 
@@ -48,14 +61,4 @@ public abstract class Obstacle {
 	 */
 	public abstract BigInteger getPeriod();
 
-	protected double getAvailabilityStandard(int timeStep) {
-		if (timeStep < 0)
-			throw new IllegalArgumentException("Negative timeStep requested.");
-		return this.availability[timeStep % availability.length];
-	}
-
-	protected void setAvailability(double[] availability) {
-		this.availability = availability.clone();
-	}
-
 }
@@ -22,6 +22,9 @@ import com.google.common.graph.ValueGraphBuilder;
 import org.oristool.models.gspn.chains.DTMCStationary;
 import org.oristool.models.gspn.chains.DTMCStationary.Builder;
 import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.metrics.AnalysisStage;
+import org.oristool.omnibus.metrics.Metrics;
+import org.oristool.omnibus.metrics.MetricsRegistry;
 import org.oristool.omnibus.vehicle.analysis.TransientAnalyzer;
 
 import java.math.BigDecimal;
@@ -38,6 +41,10 @@ public class DTMCSteadyStateAnalyzer extends SteadyStateAnalyzer {
 	@Override
 	public double[] getSteadyStateDistribution(CarFlow carFlow, TransientAnalyzer analyzer, BigDecimal timeStep) {
 		double[][] pkjMatrix = this.getPkjMatrix(carFlow, analyzer, timeStep);
+		if (cancellationToken != null)
+			cancellationToken.check("Steady state solution");
+		MetricsRegistry metrics = Metrics.getRegistry();
+		long start = metrics.startTimer();
 
 		Map<Integer, QueueState> states = new HashMap<>();
 
@@ -69,6 +76,7 @@ public class DTMCSteadyStateAnalyzer extends SteadyStateAnalyzer {
 			steadyState[i] = steadyState[i] / sum;
 		}
 
+		metrics.stopTimer(AnalysisStage.STEADY_STATE_SOLVE, start);
 		return steadyState;
 	}
 
@@ -18,17 +18,58 @@
 package org.oristool.omnibus.intersection.analysis;
 
 import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.metrics.AnalysisStage;
+import org.oristool.omnibus.metrics.Metrics;
+import org.oristool.omnibus.metrics.MetricsRegistry;
+import org.oristool.omnibus.progress.AnalysisCancelledException;
+import org.oristool.omnibus.progress.CancellationToken;
+import org.oristool.omnibus.progress.ProgressListener;
+import org.oristool.omnibus.progress.ProgressTracker;
 import org.oristool.omnibus.vehicle.BaseQueue;
 import org.oristool.omnibus.vehicle.analysis.TransientAnalyzer;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
 
 /**
  * This class provides a common interface for steady state analyzers.
  */
 public abstract class SteadyStateAnalyzer {
 
+	protected ProgressListener progressListener;
+	protected CancellationToken cancellationToken;
+
+	/**
+	 * It sets the listener of the progress of the construction of the pkj
+	 * matrix, in initial states of the queue, that takes most of the time of the
+	 * analysis. The analysis stops with an {@link AnalysisCancelledException} if
+	 * the listener cancels it.
+	 *
+	 * @param progressListener the listener, or null
+	 * @return the analyzer itself, to allow iterative calls
+	 */
+	public SteadyStateAnalyzer setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	/**
+	 * It sets the token checked by the next analyses for each initial state of the
+	 * queue and, by the iterative solvers, for each iteration. The pkj matrix
+	 * construction stops with an {@link AnalysisCancelledException} whose partial
+	 * result is the {@code double[][]} of the rows computed so far.
+	 * <p>
+	 * The token is not passed to the queue analyzer, that can be given its own.
+	 *
+	 * @param cancellationToken the token, or null
+	 * @return the analyzer itself, to allow iterative calls
+	 */
+	public SteadyStateAnalyzer setCancellationToken(CancellationToken cancellationToken) {
+		this.cancellationToken = cancellationToken;
+		return this;
+	}
+
 	/**
 	 * It computes and returns the steady state distribution of the length of the
 	 * queue at the beginning of each period.
@@ -43,6 +84,29 @@ public abstract class SteadyStateAnalyzer {
 	public abstract double[] getSteadyStateDistribution(CarFlow carFlow, TransientAnalyzer analyzer, BigDecimal timeStep);
 
 	protected double[][] getPkjMatrix(CarFlow carFlow, TransientAnalyzer analyzer, BigDecimal timeStep) {
+		return buildPkjMatrix(carFlow, analyzer, timeStep, progressListener, cancellationToken);
+	}
+
+	/**
+	 * It builds the pkj matrix of a car flow, whose element (k, j) is the
+	 * probability that the queue holds j cars at the end of the hyper-period of
+	 * its obstacles, given that it held k cars at its beginning. The steady state
+	 * analyzers solve this matrix; it is exposed to time its construction alone.
+	 *
+	 * @param carFlow           the carFlow of which build the matrix
+	 * @param analyzer          the queue analyzer that should be used
+	 * @param timeStep          the temporal resolution of the transient analysis
+	 *                          of the first period
+	 * @param progressListener  the listener of the progress, in initial states of
+	 *                          the queue, or null
+	 * @param cancellationToken the token checked for each initial state of the
+	 *                          queue, or null
+	 * @return the pkj matrix
+	 */
+	public static double[][] buildPkjMatrix(CarFlow carFlow, TransientAnalyzer analyzer, BigDecimal timeStep,
+			ProgressListener progressListener, CancellationToken cancellationToken) {
+		MetricsRegistry metrics = Metrics.getRegistry();
+		long start = metrics.startTimer();
 		int hyperPeriod = carFlow.getObstaclesHyperPeriod();
 		int hyperPeriodStep = new BigDecimal(hyperPeriod).divide(timeStep).intValue() + 1;
 
@@ -50,7 +114,13 @@ public abstract class SteadyStateAnalyzer {
 
 		double[][] pkjMatrix = new double[carFlow.getQueue().getSize().add(BigInteger.ONE).intValue()][carFlow
 				.getQueue().getSize().add(BigInteger.ONE).intValue()];
+		ProgressTracker progress = new ProgressTracker(progressListener, "Pkj matrix",
+				carFlow.getQueue().getSize().intValue() + 1);
 		for (int k = 0; k <= carFlow.getQueue().getSize().intValue(); k++) {
+			if (cancellationToken != null) {
+				int rows = k;
+				cancellationToken.check("Pkj matrix", () -> Arrays.copyOf(pkjMatrix, rows));
+			}
 			BaseQueue tmpQueue = carFlow.getQueue().getClone();
 			tmpQueue.setInitialElements(new BigInteger(Integer.toString(k)));
 			double[][] stateProbabilitiesAlongFirstPeriod = analyzer
@@ -59,8 +129,11 @@ public abstract class SteadyStateAnalyzer {
 			for (int j = 0; j <= carFlow.getQueue().getSize().intValue(); j++) {
 				pkjMatrix[k][j] = stateProbabilitiesAlongFirstPeriod[firstPeriodAvailability.length - 1][j];
 			}
+			progress.advance(1);
 		}
 
+		progress.finish();
+		metrics.stopTimer(AnalysisStage.PKJ_MATRIX, start);
 		return pkjMatrix;
 	}
 
@@ -23,6 +23,9 @@ import cern.colt.matrix.linalg.Algebra;
 import cern.jet.math.Functions;
 
 import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.metrics.AnalysisStage;
+import org.oristool.omnibus.metrics.Metrics;
+import org.oristool.omnibus.metrics.MetricsRegistry;
 import org.oristool.omnibus.vehicle.analysis.TransientAnalyzer;
 
 import java.math.BigDecimal;
@@ -32,6 +35,9 @@ import java.math.BigInteger;
  * This analyzer compute the steady state distribution of the length of the
  * queue at the beginning of each period in a transient way. It's a little bit
  * faster than DTMCSteadyStateAnalyzer but can be vague.
+ * <p>
+ * If cancelled during the iterations, the partial result is the
+ * {@code double[]} distribution reached so far.
  */
 @Deprecated
 public class TransientSteadyStateAnalyzer extends SteadyStateAnalyzer {
@@ -51,6 +57,8 @@ public class TransientSteadyStateAnalyzer extends SteadyStateAnalyzer {
 	@Override
 	public double[] getSteadyStateDistribution(CarFlow carFlow, TransientAnalyzer analyzer, BigDecimal timeStep) {
 		double[][] pkjMatrix = this.getPkjMatrix(carFlow, analyzer, timeStep);
+		MetricsRegistry metrics = Metrics.getRegistry();
+		long start = metrics.startTimer();
 
 		DoubleMatrix2D matrix = new DenseDoubleMatrix2D(carFlow.getQueue().getSize().add(BigInteger.ONE).intValue(),
 				carFlow.getQueue().getSize().add(BigInteger.ONE).intValue());
@@ -72,6 +80,10 @@ public class TransientSteadyStateAnalyzer extends SteadyStateAnalyzer {
 		DoubleMatrix2D nextState = initialState;
 		DoubleMatrix2D sub = new DenseDoubleMatrix2D(1, carFlow.getQueue().getSize().add(BigInteger.ONE).intValue());
 		do {
+			if (cancellationToken != null) {
+				DoubleMatrix2D estimate = nextState;
+				cancellationToken.check("Steady state iteration", () -> estimate.viewRow(0).toArray());
+			}
 			currentState = nextState;
 			nextState = algebra.mult(currentState, matrix);
 			for (int i = 0; i < carFlow.getQueue().getSize().add(BigInteger.ONE).intValue(); i++) {
@@ -84,6 +96,7 @@ public class TransientSteadyStateAnalyzer extends SteadyStateAnalyzer {
 			steadyState[i] = nextState.get(0, i);
 		}
 
+		metrics.stopTimer(AnalysisStage.STEADY_STATE_SOLVE, start);
 		return steadyState;
 	}
 
@@ -0,0 +1,312 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.oristool.omnibus.progress.ProgressListener;
+import org.oristool.omnibus.progress.ProgressTracker;
+
+/**
+ * This class searches a good semaphore pattern by simulated annealing over a
+ * {@link PatternNeighbourhood}, as an alternative to the exhaustive
+ * {@link PatternSearch} when the pattern space is too large.
+ * <p>
+ * One run is started from each given pattern, and runs are executed in
+ * parallel on a {@link ForkJoinPool}, each worker thread with its own
+ * evaluator. At each step a run visits the neighbours of its current pattern in
+ * random order, and moves to the first one that is better or that is accepted
+ * with probability {@code exp(-delta / temperature)}; the temperature is
+ * multiplied by the cooling rate after each move. A run stops in a local
+ * optimum, after too many moves without improving its best pattern, or when
+ * the budget of the optimization is exhausted.
+ * <p>
+ * The values of the patterns are cached and shared by all the runs, and only
+ * actual evaluations count in the budget. With zero temperature (the default)
+ * the runs are randomized local searches.
+ */
+public class AnnealingPatternOptimizer {
+
+	private final Supplier<? extends PatternEvaluator> evaluatorFactory;
+	private final PatternNeighbourhood neighbourhood;
+	private ForkJoinPool pool;
+	private long maxEvaluations;
+	private long timeLimitMillis;
+	private int maxMovesWithoutImprovement;
+	private double initialTemperature;
+	private double coolingRate;
+	private long seed;
+	private ProgressListener progressListener;
+
+	/**
+	 * It builds an optimizer with no budget limits and zero temperature, that runs
+	 * on the common {@link ForkJoinPool}.
+	 *
+	 * @param evaluatorFactory the factory of the evaluators, called once for each
+	 *                         worker thread of each optimization; the evaluators are
+	 *                         released when the optimization ends
+	 * @param neighbourhood    the moves of the local search
+	 */
+	public AnnealingPatternOptimizer(Supplier<? extends PatternEvaluator> evaluatorFactory,
+			PatternNeighbourhood neighbourhood) {
+		if (evaluatorFactory == null)
+			throw new IllegalArgumentException("evaluatorFactory cannot be null.");
+		if (neighbourhood == null)
+			throw new IllegalArgumentException("neighbourhood cannot be null.");
+		this.evaluatorFactory = evaluatorFactory;
+		this.neighbourhood = neighbourhood;
+		this.pool = ForkJoinPool.commonPool();
+		this.maxEvaluations = Long.MAX_VALUE;
+		this.timeLimitMillis = Long.MAX_VALUE;
+		this.maxMovesWithoutImprovement = 1000;
+		this.initialTemperature = 0.;
+		this.coolingRate = 1.;
+	}
+
+	/**
+	 * @param pool the pool running the runs
+	 * @return the optimizer itself, to allow iterative calls
+	 */
+	public AnnealingPatternOptimizer setPool(ForkJoinPool pool) {
+		if (pool == null)
+			throw new IllegalArgumentException("pool cannot be null.");
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * @param maxEvaluations the maximum number of patterns evaluated by all the
+	 *                       runs together
+	 * @return the optimizer itself, to allow iterative calls
+	 */
+	public AnnealingPatternOptimizer setMaxEvaluations(long maxEvaluations) {
+		if (maxEvaluations < 1)
+			throw new IllegalArgumentException("maxEvaluations must be greater than zero.");
+		this.maxEvaluations = maxEvaluations;
+		return this;
+	}
+
+	/**
+	 * @param timeLimitMillis the time after which no more patterns are evaluated,
+	 *                        in milliseconds; evaluations in progress are completed
+	 * @return the optimizer itself, to allow iterative calls
+	 */
+	public AnnealingPatternOptimizer setTimeLimit(long timeLimitMillis) {
+		if (timeLimitMillis < 0)
+			throw new IllegalArgumentException("timeLimitMillis must be equal or greater than zero.");
+		this.timeLimitMillis = timeLimitMillis;
+		return this;
+	}
+
+	/**
+	 * @param maxMovesWithoutImprovement the number of consecutive moves without
+	 *                                   improving its best pattern that ends a run
+	 * @return the optimizer itself, to allow iterative calls
+	 */
+	public AnnealingPatternOptimizer setMaxMovesWithoutImprovement(int maxMovesWithoutImprovement) {
+		if (maxMovesWithoutImprovement < 1)
+			throw new IllegalArgumentException("maxMovesWithoutImprovement must be greater than zero.");
+		this.maxMovesWithoutImprovement = maxMovesWithoutImprovement;
+		return this;
+	}
+
+	/**
+	 * @param initialTemperature the initial temperature, in the unit of the
+	 *                           pattern values
+	 * @param coolingRate        the factor applied to the temperature after each
+	 *                           move, in (0, 1]
+	 * @return the optimizer itself, to allow iterative calls
+	 */
+	public AnnealingPatternOptimizer setTemperature(double initialTemperature, double coolingRate) {
+		if (initialTemperature < 0)
+			throw new IllegalArgumentException("initialTemperature must be equal or greater than zero.");
+		if (coolingRate <= 0 || coolingRate > 1)
+			throw new IllegalArgumentException("coolingRate must be in (0, 1].");
+		this.initialTemperature = initialTemperature;
+		this.coolingRate = coolingRate;
+		return this;
+	}
+
+	/**
+	 * @param seed the seed of the random choices; run {@code i} uses
+	 *             {@code seed + i}
+	 * @return the optimizer itself, to allow iterative calls
+	 */
+	public AnnealingPatternOptimizer setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * It sets the listener of the progress of the optimization, in evaluated
+	 * patterns out of the maximum number of evaluations, if set. If the listener
+	 * cancels the optimization, {@link #optimize(List)} throws an
+	 * {@link org.oristool.omnibus.progress.AnalysisCancelledException}.
+	 *
+	 * @param progressListener the listener, or null
+	 * @return the optimizer itself, to allow iterative calls
+	 */
+	public AnnealingPatternOptimizer setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	/**
+	 * It runs the optimization, with one run for each starting pattern.
+	 *
+	 * @param starts the starting patterns
+	 * @return the best pattern found and the number of evaluated patterns
+	 */
+	public PatternSearch.Result optimize(List<SlotPattern> starts) {
+		Optimization optimization = new Optimization();
+		List<ForkJoinTask<?>> runs = new ArrayList<>();
+		for (int i = 0; i < starts.size(); i++) {
+			SlotPattern start = starts.get(i);
+			long runSeed = seed + i;
+			runs.add(ForkJoinTask.adapt(() -> optimization.run(start, new Random(runSeed))));
+		}
+		try {
+			pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(runs)));
+			optimization.progress.finish();
+		} catch (CancellationException e) {
+			optimization.progress.checkCancelled();
+			throw e;
+		} finally {
+			optimization.close();
+		}
+		return optimization.getResult();
+	}
+
+	/**
+	 * The state of a single call to {@link AnnealingPatternOptimizer#optimize(List)}.
+	 */
+	private final class Optimization {
+
+		// the evaluators of the worker threads, released when the optimization ends
+		private final ConcurrentHashMap<Thread, PatternEvaluator> evaluators = new ConcurrentHashMap<>();
+		private final Map<SlotPattern, Double> values = new ConcurrentHashMap<>();
+		private final AtomicLong evaluations = new AtomicLong();
+		private final AtomicReference<PatternSearch.Result> best = new AtomicReference<>(
+				new PatternSearch.Result(null, Double.POSITIVE_INFINITY, 0));
+		private final boolean timeLimited;
+		private final long deadline;
+		private final ProgressTracker progress = new ProgressTracker(progressListener, "Annealing",
+				maxEvaluations != Long.MAX_VALUE ? maxEvaluations : -1);
+
+		private Optimization() {
+			this.timeLimited = timeLimitMillis != Long.MAX_VALUE;
+			this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+		}
+
+		private void run(SlotPattern start, Random random) {
+			Double currentValue = valueOf(start);
+			if (currentValue == null)
+				return;
+			SlotPattern current = start;
+			double runBest = currentValue;
+			double temperature = initialTemperature;
+			int movesWithoutImprovement = 0;
+
+			while (true) {
+				List<SlotPattern> neighbours = new ArrayList<>(neighbourhood.neighbours(current));
+				Collections.shuffle(neighbours, random);
+				SlotPattern next = null;
+				double nextValue = 0.;
+				for (SlotPattern neighbour : neighbours) {
+					Double value = valueOf(neighbour);
+					if (value == null)
+						return;
+					if (value < currentValue || temperature > 0
+							&& random.nextDouble() < Math.exp((currentValue - value) / temperature)) {
+						next = neighbour;
+						nextValue = value;
+						break;
+					}
+				}
+				if (next == null)
+					return;
+
+				current = next;
+				currentValue = nextValue;
+				temperature *= coolingRate;
+				if (currentValue < runBest) {
+					runBest = currentValue;
+					movesWithoutImprovement = 0;
+				} else if (++movesWithoutImprovement >= maxMovesWithoutImprovement) {
+					return;
+				}
+			}
+		}
+
+		private PatternEvaluator getEvaluator() {
+			// only the current thread adds its own key, so get and put do not race
+			Thread thread = Thread.currentThread();
+			PatternEvaluator evaluator = evaluators.get(thread);
+			if (evaluator == null) {
+				evaluator = evaluatorFactory.get();
+				evaluators.put(thread, evaluator);
+			}
+			return evaluator;
+		}
+
+		/**
+		 * It returns the value of a pattern from the cache, or evaluates it if the
+		 * budget allows it; it returns null if the budget is exhausted.
+		 */
+		private Double valueOf(SlotPattern pattern) {
+			Double cached = values.get(pattern);
+			if (cached != null)
+				return cached;
+			if (timeLimited && System.nanoTime() - deadline >= 0 || evaluations.incrementAndGet() > maxEvaluations)
+				return null;
+
+			double value = getEvaluator().evaluate(pattern);
+			values.put(pattern, value);
+			progress.advance(1);
+
+			PatternSearch.Result current = best.get();
+			while (value < current.getBestValue()
+					&& !best.compareAndSet(current, new PatternSearch.Result(pattern, value, 0))) {
+				current = best.get();
+			}
+			return value;
+		}
+
+		private void close() {
+			evaluators.clear();
+		}
+
+		private PatternSearch.Result getResult() {
+			PatternSearch.Result result = best.get();
+			return new PatternSearch.Result(result.getBestPattern(), result.getBestValue(), values.size());
+		}
+	}
+
+}
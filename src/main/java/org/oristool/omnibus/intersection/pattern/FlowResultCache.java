@@ -0,0 +1,173 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.oristool.omnibus.intersection.CarSemaphore;
+import org.oristool.omnibus.metrics.AnalysisCounter;
+import org.oristool.omnibus.metrics.Metrics;
+
+/**
+ * This is a cache of per-flow results of pattern evaluations, keyed by the
+ * index of the flow and the plan of its semaphore.
+ * <p>
+ * Applying a pattern changes the availability of a flow only through its own
+ * semaphore, so two patterns that give the same green segments to a flow yield
+ * the same results for it. Neighbouring patterns usually change the plans of
+ * one or two semaphores, and the other flows are not analyzed again.
+ * <p>
+ * The cache keeps the most recently used entries up to its capacity. It is
+ * thread-safe, so it can be shared by the evaluators of a search as long as
+ * they analyze copies of the same car flows; results are computed outside the
+ * lock, and two threads can compute the same result at the same time.
+ *
+ * @param <V> the type of the per-flow results, that should be immutable
+ */
+public class FlowResultCache<V> {
+
+	/**
+	 * The default maximum number of cached results.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final Map<Key, V> results;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * It builds a cache with the default capacity.
+	 */
+	public FlowResultCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the maximum number of cached results
+	 */
+	public FlowResultCache(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be greater than zero.");
+		this.results = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * It returns the result of a flow for the current plan of its semaphore,
+	 * computing it only if it is not cached.
+	 *
+	 * @param flow      the index of the flow
+	 * @param semaphore the semaphore of the flow, with the plan already applied
+	 * @param compute   the computation of the result, for cache misses
+	 * @return the result
+	 */
+	public V get(int flow, CarSemaphore semaphore, Supplier<? extends V> compute) {
+		Key key = new Key(flow, semaphore.getPeriodSteps(), semaphore.getGreenSegments());
+		V result;
+		synchronized (results) {
+			result = results.get(key);
+		}
+		if (result != null) {
+			hits.increment();
+			Metrics.getRegistry().increment(AnalysisCounter.FLOW_CACHE_HITS, 1);
+			return result;
+		}
+
+		misses.increment();
+		Metrics.getRegistry().increment(AnalysisCounter.FLOW_CACHE_MISSES, 1);
+		V computed = compute.get();
+		synchronized (results) {
+			results.put(key, computed);
+		}
+		return computed;
+	}
+
+	/**
+	 * @return the number of results found in the cache
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of results computed
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of cached results
+	 */
+	public int size() {
+		synchronized (results) {
+			return results.size();
+		}
+	}
+
+	/**
+	 * It removes all the cached results, for instance after changing the car
+	 * flows.
+	 */
+	public void clear() {
+		synchronized (results) {
+			results.clear();
+		}
+	}
+
+	private static final class Key {
+		private final int flow;
+		private final int periodSteps;
+		private final int[] segments;
+		private final int hash;
+
+		private Key(int flow, int periodSteps, int[] segments) {
+			this.flow = flow;
+			this.periodSteps = periodSteps;
+			this.segments = segments;
+			this.hash = 31 * (31 * flow + periodSteps) + Arrays.hashCode(segments);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return flow == other.flow && periodSteps == other.periodSteps
+					&& Arrays.equals(segments, other.segments);
+		}
+	}
+
+}
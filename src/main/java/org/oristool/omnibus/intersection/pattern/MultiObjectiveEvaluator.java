@@ -0,0 +1,45 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+/**
+ * This interface provides the evaluation of semaphore patterns with respect to
+ * several objectives at once, for instance the values of some
+ * {@link PatternObjective}s on the same analysis of the flows. The first value
+ * is the primary objective, used when a single value is needed.
+ */
+@FunctionalInterface
+public interface MultiObjectiveEvaluator extends PatternEvaluator {
+
+	/**
+	 * It evaluates a pattern with respect to all the objectives.
+	 *
+	 * @param pattern the pattern to evaluate
+	 * @return the values of the objectives, lower is better
+	 */
+	double[] evaluateAll(SlotPattern pattern);
+
+	/**
+	 * It returns the value of the primary objective.
+	 */
+	@Override
+	default double evaluate(SlotPattern pattern) {
+		return evaluateAll(pattern)[0];
+	}
+
+}
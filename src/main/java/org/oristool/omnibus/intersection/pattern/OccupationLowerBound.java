@@ -0,0 +1,135 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.oristool.omnibus.intersection.CarFlow;
+
+/**
+ * This class computes cheap lower bounds of the maximum expected occupation of
+ * the queues of an intersection, given only the first slots of a semaphore
+ * pattern.
+ * <p>
+ * While its semaphore is red a queue is not served, so in each time step it
+ * grows by one vehicle with the arrival probability, until it is full. Starting
+ * from any state, after {@code m} red steps the expected number of vehicles is
+ * then at least {@code E[min(B, K)]}, where {@code B} is binomial with {@code m}
+ * trials and {@code K} is the size of the queue. This holds whatever the other
+ * obstacles of the flow, that can only reduce the service.
+ */
+public class OccupationLowerBound {
+
+	private final double[] arrivalProbabilities;
+	private final int[] queueSizes;
+	private final BigDecimal timeStep;
+
+	/**
+	 * @param timeStep the time step of the queue analysis
+	 * @param carFlows the car flows, indexed by the flow ids of the patterns
+	 */
+	public OccupationLowerBound(BigDecimal timeStep, CarFlow... carFlows) {
+		if (timeStep.signum() <= 0)
+			throw new IllegalArgumentException("timeStep must be greater than zero.");
+		this.timeStep = timeStep;
+		this.arrivalProbabilities = new double[carFlows.length];
+		this.queueSizes = new int[carFlows.length];
+		for (int i = 0; i < carFlows.length; i++) {
+			this.arrivalProbabilities[i] = carFlows[i].getQueue().getArrivalDistribution().getLambda()
+					.multiply(timeStep).doubleValue();
+			this.queueSizes[i] = carFlows[i].getQueue().getSize().intValue();
+		}
+	}
+
+	/**
+	 * It returns a lower bound of the maximum expected occupation, as a fraction of
+	 * the queue size, of a flow whose semaphore is red for some consecutive
+	 * seconds.
+	 *
+	 * @param flow       the flow id
+	 * @param redSeconds the length of the red stretch
+	 * @return the lower bound, in [0, 1]
+	 */
+	public double redStretchOccupation(int flow, int redSeconds) {
+		BigDecimal steps = BigDecimal.valueOf(redSeconds).divide(timeStep, 0, RoundingMode.FLOOR);
+		// the stretch can lose one step at each end when seconds are not a multiple
+		// of the time step, and its last step is not followed by a transition
+		boolean exact = steps.multiply(timeStep).compareTo(BigDecimal.valueOf(redSeconds)) == 0;
+		int transitions = steps.intValue() - (exact ? 1 : 3);
+		if (transitions <= 0)
+			return 0.;
+		return expectedCappedBinomial(transitions, arrivalProbabilities[flow], queueSizes[flow])
+				/ queueSizes[flow];
+	}
+
+	/**
+	 * It returns a lower bound of the maximum expected occupation over all the
+	 * flows, valid for every pattern starting with the given slots. A red slot at
+	 * the end of the prefix is ignored, since it can still become green.
+	 *
+	 * @param prefix the first slots of the pattern
+	 * @return the lower bound
+	 */
+	public double lowerBound(SlotPattern prefix) {
+		int slotCount = prefix.getSlotCount();
+		if (slotCount > 0 && prefix.getFlow(slotCount - 1) == SlotPattern.RED)
+			slotCount--;
+
+		double bound = 0.;
+		for (int flow = 0; flow < queueSizes.length; flow++) {
+			int longestRed = 0;
+			int currentRed = 0;
+			for (int slot = 0; slot < slotCount; slot++) {
+				if (prefix.getFlow(slot) == flow) {
+					currentRed = 0;
+				} else {
+					currentRed += prefix.getDuration(slot);
+					longestRed = Math.max(longestRed, currentRed);
+				}
+			}
+			bound = Math.max(bound, redStretchOccupation(flow, longestRed));
+		}
+		return bound;
+	}
+
+	/**
+	 * It returns {@code E[min(B, k)]} where {@code B} is binomial with {@code n}
+	 * trials and success probability {@code p}. The binomial probabilities are
+	 * computed in log space, so that they do not underflow for long stretches.
+	 */
+	private static double expectedCappedBinomial(int n, double p, int k) {
+		if (p <= 0.)
+			return 0.;
+		if (p >= 1.)
+			return Math.min(n, k);
+
+		double logOdds = Math.log(p) - Math.log1p(-p);
+		double logProbability = n * Math.log1p(-p);
+		double belowCap = 0.;
+		double expected = 0.;
+		for (int i = 0; i < Math.min(n + 1, k); i++) {
+			double probability = Math.exp(logProbability);
+			belowCap += probability;
+			expected += i * probability;
+			logProbability += Math.log(n - i) - Math.log(i + 1) + logOdds;
+		}
+		return expected + k * Math.max(0., 1. - belowCap);
+	}
+
+}
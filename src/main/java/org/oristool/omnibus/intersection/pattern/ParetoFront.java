@@ -0,0 +1,122 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * It maintains the Pareto front of the evaluated patterns, i.e. the patterns
+ * whose values are not dominated by the values of other patterns (lower values
+ * are better).
+ * <p>
+ * The front is an immutable list replaced by compare-and-set, so that it can be
+ * updated by several workers without locks; since most patterns are dominated,
+ * most offers only read it.
+ */
+public class ParetoFront {
+
+	private final AtomicReference<List<Entry>> entries = new AtomicReference<>(Collections.emptyList());
+
+	/**
+	 * It offers a pattern to the front.
+	 *
+	 * @param pattern the pattern
+	 * @param values  the values of its objectives
+	 * @return true if the pattern entered the front
+	 */
+	public boolean offer(SlotPattern pattern, double[] values) {
+		Entry entry = new Entry(pattern, values.clone());
+		while (true) {
+			List<Entry> current = entries.get();
+			List<Entry> updated = new ArrayList<>(current.size() + 1);
+			for (Entry other : current) {
+				if (dominates(other.values, entry.values))
+					return false;
+				if (!dominates(entry.values, other.values))
+					updated.add(other);
+			}
+			updated.add(entry);
+			if (entries.compareAndSet(current, Collections.unmodifiableList(updated)))
+				return true;
+		}
+	}
+
+	/**
+	 * @return the patterns of the front, in no particular order
+	 */
+	public List<Entry> getEntries() {
+		return entries.get();
+	}
+
+	/**
+	 * @param a some values
+	 * @param b some other values
+	 * @return true if {@code a} is not greater than {@code b} in every component
+	 *         and lower in at least one
+	 */
+	public static boolean dominates(double[] a, double[] b) {
+		if (a.length != b.length)
+			throw new IllegalArgumentException("Values must have the same length.");
+		boolean lower = false;
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] > b[i])
+				return false;
+			if (a[i] < b[i])
+				lower = true;
+		}
+		return lower;
+	}
+
+	/**
+	 * A pattern of the front with its values.
+	 */
+	public static final class Entry {
+
+		private final SlotPattern pattern;
+		private final double[] values;
+
+		private Entry(SlotPattern pattern, double[] values) {
+			this.pattern = pattern;
+			this.values = values;
+		}
+
+		/**
+		 * @return the pattern
+		 */
+		public SlotPattern getPattern() {
+			return pattern;
+		}
+
+		/**
+		 * @return a copy of the values of the objectives
+		 */
+		public double[] getValues() {
+			return values.clone();
+		}
+
+		@Override
+		public String toString() {
+			return pattern + " " + Arrays.toString(values);
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+/**
+ * This interface provides the evaluation of semaphore patterns for a pattern
+ * search: lower values are better.
+ * <p>
+ * Evaluators usually apply the pattern to their own copies of the car flows, so
+ * they are not required to be thread-safe: a {@link PatternSearch} creates one
+ * evaluator for each worker thread.
+ */
+@FunctionalInterface
+public interface PatternEvaluator {
+
+	/**
+	 * It evaluates a pattern.
+	 *
+	 * @param pattern the pattern to evaluate
+	 * @return the value of the pattern, lower is better
+	 */
+	double evaluate(SlotPattern pattern);
+
+	/**
+	 * It evaluates a pattern, possibly stopping as soon as its value is known to
+	 * be not lower than a bound. By default it evaluates the whole pattern.
+	 *
+	 * @param pattern the pattern to evaluate
+	 * @param bound   the value under which the exact value is needed
+	 * @return the value of the pattern if it is lower than the bound, otherwise
+	 *         any value not lower than the bound and not greater than the value of
+	 *         the pattern
+	 */
+	default double evaluate(SlotPattern pattern, double bound) {
+		return evaluate(pattern);
+	}
+
+}
@@ -0,0 +1,167 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This interface provides the neighbourhood of a semaphore pattern, i.e. the
+ * patterns that a local search can reach from it with one move.
+ */
+@FunctionalInterface
+public interface PatternNeighbourhood {
+
+	/**
+	 * @param pattern the current pattern
+	 * @return the neighbours of the pattern
+	 */
+	List<SlotPattern> neighbours(SlotPattern pattern);
+
+	/**
+	 * @param other another neighbourhood
+	 * @return the neighbourhood made of the moves of both
+	 */
+	default PatternNeighbourhood and(PatternNeighbourhood other) {
+		return pattern -> {
+			Set<SlotPattern> neighbours = new LinkedHashSet<>(neighbours(pattern));
+			neighbours.addAll(other.neighbours(pattern));
+			return new ArrayList<>(neighbours);
+		};
+	}
+
+	/**
+	 * It returns the neighbourhood that assigns one green slot to a different
+	 * flow, keeping its duration and position. Only patterns serving every flow,
+	 * with no flow served by two consecutive green slots (also across the end of
+	 * the period), are neighbours; moves that leave green slots of different flows
+	 * adjacent without a red slot between them, where there was none, are
+	 * discarded.
+	 *
+	 * @param flowCount the number of flows, with ids from zero
+	 * @return the neighbourhood
+	 */
+	static PatternNeighbourhood slotFlips(int flowCount) {
+		if (flowCount < 1 || flowCount > SlotPattern.MAX_FLOWS)
+			throw new IllegalArgumentException("flowCount must be in [1, " + SlotPattern.MAX_FLOWS + "].");
+		return pattern -> {
+			Set<SlotPattern> neighbours = new LinkedHashSet<>();
+			for (int i = 0; i < pattern.getSlotCount(); i++) {
+				if (pattern.getFlow(i) == SlotPattern.RED)
+					continue;
+				for (int flow = 0; flow < flowCount; flow++) {
+					if (flow == pattern.getFlow(i))
+						continue;
+					SlotPattern.Builder builder = new SlotPattern.Builder();
+					for (int j = 0; j < pattern.getSlotCount(); j++) {
+						builder.add(j == i ? flow : pattern.getFlow(j), pattern.getDuration(j));
+					}
+					SlotPattern neighbour = builder.build();
+					if (isFeasible(neighbour, flowCount)
+							&& adjacentGreens(neighbour) <= adjacentGreens(pattern))
+						neighbours.add(neighbour);
+				}
+			}
+			return new ArrayList<>(neighbours);
+		};
+	}
+
+	/**
+	 * It returns the neighbourhood that moves some seconds of green from a green
+	 * slot to the following one, or vice versa, shifting the red slots between
+	 * them. The green slots of the period are not considered consecutive across
+	 * its end.
+	 *
+	 * @param seconds      the seconds moved by each move
+	 * @param minimumGreen the minimum duration of a green slot after a move
+	 * @return the neighbourhood
+	 */
+	static PatternNeighbourhood greenShifts(int seconds, int minimumGreen) {
+		if (seconds < 1)
+			throw new IllegalArgumentException("seconds must be greater than zero.");
+		if (minimumGreen < 1)
+			throw new IllegalArgumentException("minimumGreen must be greater than zero.");
+		return pattern -> {
+			Set<SlotPattern> neighbours = new LinkedHashSet<>();
+			int previous = -1;
+			for (int i = 0; i < pattern.getSlotCount(); i++) {
+				if (pattern.getFlow(i) == SlotPattern.RED)
+					continue;
+				if (previous >= 0) {
+					if (pattern.getDuration(previous) - seconds >= minimumGreen)
+						neighbours.add(shift(pattern, previous, i, -seconds));
+					if (pattern.getDuration(i) - seconds >= minimumGreen)
+						neighbours.add(shift(pattern, previous, i, seconds));
+				}
+				previous = i;
+			}
+			return new ArrayList<>(neighbours);
+		};
+	}
+
+	private static SlotPattern shift(SlotPattern pattern, int first, int second, int seconds) {
+		SlotPattern.Builder builder = new SlotPattern.Builder();
+		for (int j = 0; j < pattern.getSlotCount(); j++) {
+			int duration = pattern.getDuration(j);
+			if (j == first)
+				duration += seconds;
+			else if (j == second)
+				duration -= seconds;
+			builder.add(pattern.getFlow(j), duration);
+		}
+		return builder.build();
+	}
+
+	private static int adjacentGreens(SlotPattern pattern) {
+		int adjacent = 0;
+		int slotCount = pattern.getSlotCount();
+		for (int i = 0; i < slotCount && slotCount > 1; i++) {
+			int flow = pattern.getFlow(i);
+			int next = pattern.getFlow((i + 1) % slotCount);
+			if (flow != SlotPattern.RED && next != SlotPattern.RED && flow != next)
+				adjacent++;
+		}
+		return adjacent;
+	}
+
+	private static boolean isFeasible(SlotPattern pattern, int flowCount) {
+		boolean[] served = new boolean[flowCount];
+		int first = -1;
+		int last = -1;
+		for (int i = 0; i < pattern.getSlotCount(); i++) {
+			int flow = pattern.getFlow(i);
+			if (flow == SlotPattern.RED)
+				continue;
+			if (flow == last)
+				return false;
+			if (first < 0)
+				first = flow;
+			if (flow < flowCount)
+				served[flow] = true;
+			last = flow;
+		}
+		for (boolean s : served) {
+			if (!s)
+				return false;
+		}
+		return flowCount == 1 || first != last;
+	}
+
+}
@@ -0,0 +1,151 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+import org.oristool.omnibus.intersection.FlowMetrics;
+
+/**
+ * This interface provides an objective of the pattern search, computed from
+ * the metrics of all the flows of the intersection: lower values are better.
+ * <p>
+ * Objectives only combine metrics that are computed once for each flow, so
+ * several objectives can be evaluated on the same analysis.
+ */
+@FunctionalInterface
+public interface PatternObjective {
+
+	/**
+	 * @param flows the metrics of the flows, indexed by flow id
+	 * @return the value of the objective, lower is better
+	 */
+	double evaluate(FlowMetrics... flows);
+
+	/**
+	 * @return the name of the objective, used in reports
+	 */
+	default String getName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * @param name the name of the objective
+	 * @param objective the objective
+	 * @return the same objective, with the given name
+	 */
+	static PatternObjective named(String name, PatternObjective objective) {
+		return new PatternObjective() {
+			@Override
+			public double evaluate(FlowMetrics... flows) {
+				return objective.evaluate(flows);
+			}
+
+			@Override
+			public String getName() {
+				return name;
+			}
+		};
+	}
+
+	/**
+	 * @return the maximum over the flows of the maximum expected occupation of
+	 *         the queue, as a fraction of its size
+	 */
+	static PatternObjective maxOccupation() {
+		return named("maxOccupation", flows -> {
+			double max = Double.MIN_VALUE;
+			for (FlowMetrics flow : flows) {
+				max = Math.max(max, flow.getMaxOccupation());
+			}
+			return max;
+		});
+	}
+
+	/**
+	 * @return the mean delay of all the vehicles entering the queues, i.e. the
+	 *         total mean number of queued vehicles divided by the total
+	 *         throughput (Little's law)
+	 */
+	static PatternObjective meanDelay() {
+		return named("meanDelay", flows -> {
+			double queued = 0.;
+			double throughput = 0.;
+			for (FlowMetrics flow : flows) {
+				queued += flow.getMeanExpectedQueue();
+				throughput += flow.getThroughput();
+			}
+			return throughput > 0 ? queued / throughput : Double.POSITIVE_INFINITY;
+		});
+	}
+
+	/**
+	 * It returns the rate of the vehicles that find a full queue, summed over the
+	 * flows. Since arrival rates do not depend on the pattern, minimizing it
+	 * maximizes the total throughput.
+	 *
+	 * @return the total rate of lost arrivals, in vehicles per second
+	 */
+	static PatternObjective throughputLoss() {
+		return named("throughputLoss", flows -> {
+			double loss = 0.;
+			for (FlowMetrics flow : flows) {
+				loss += flow.getArrivalRate() - flow.getThroughput();
+			}
+			return loss;
+		});
+	}
+
+	/**
+	 * @return the maximum over the flows of the maximum probability of a full
+	 *         queue, i.e. of vehicles spilling back beyond the road
+	 */
+	static PatternObjective spillback() {
+		return named("spillback", flows -> {
+			double max = 0.;
+			for (FlowMetrics flow : flows) {
+				max = Math.max(max, flow.getMaxBlockProbability());
+			}
+			return max;
+		});
+	}
+
+	/**
+	 * @param weights    the weights of the objectives
+	 * @param objectives the objectives
+	 * @return the weighted sum of the objectives
+	 */
+	static PatternObjective weightedSum(double[] weights, PatternObjective... objectives) {
+		if (weights.length != objectives.length)
+			throw new IllegalArgumentException("weights and objectives must have the same length.");
+		double[] w = weights.clone();
+		PatternObjective[] o = objectives.clone();
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < o.length; i++) {
+			if (i > 0)
+				name.append('+');
+			name.append(w[i]).append('*').append(o[i].getName());
+		}
+		return named(name.toString(), flows -> {
+			double sum = 0.;
+			for (int i = 0; i < o.length; i++) {
+				sum += w[i] * o[i].evaluate(flows);
+			}
+			return sum;
+		});
+	}
+
+}
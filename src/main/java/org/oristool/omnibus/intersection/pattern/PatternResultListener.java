@@ -0,0 +1,62 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+/**
+ * This interface provides a callback for the patterns evaluated by a
+ * {@link PatternSearch}. It is never called concurrently: it is called by a
+ * separate thread, or by a worker when that thread falls behind, so that
+ * implementations can write results without locks.
+ */
+@FunctionalInterface
+public interface PatternResultListener {
+
+	/**
+	 * It is called once for each evaluated pattern, in no particular order.
+	 *
+	 * @param pattern the evaluated pattern
+	 * @param value   the value of the pattern
+	 */
+	void onResult(SlotPattern pattern, double value);
+
+	/**
+	 * It is called instead of {@link #onResult(SlotPattern, double)} when the
+	 * patterns are evaluated by a {@link MultiObjectiveEvaluator}. By default it
+	 * passes on the value of the primary objective.
+	 *
+	 * @param pattern the evaluated pattern
+	 * @param values  the values of the objectives
+	 */
+	default void onResult(SlotPattern pattern, double[] values) {
+		onResult(pattern, values[0]);
+	}
+
+	/**
+	 * It is called instead of {@link #onResult(SlotPattern, double)} when a
+	 * search with pruning stops the evaluation of a pattern because it cannot
+	 * improve the best one, so that its exact value is not known. By default it
+	 * does nothing.
+	 *
+	 * @param pattern    the pruned pattern
+	 * @param lowerBound a lower bound of the value of the pattern, not lower than
+	 *                   the best value found when it was evaluated
+	 */
+	default void onPruned(SlotPattern pattern, double lowerBound) {
+	}
+
+}
@@ -0,0 +1,516 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.oristool.omnibus.progress.ProgressListener;
+import org.oristool.omnibus.progress.ProgressTracker;
+
+/**
+ * This class searches the best semaphore pattern among the ones of a
+ * {@link Spliterator}, evaluating them in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * The spliterator is split recursively while there are idle workers, so that
+ * each worker pulls patterns from its own part of the pattern space, and each
+ * worker thread uses its own evaluator, created by the given factory (usually
+ * with its own clones of the car flows). The best pattern found so far is
+ * shared by all workers without locks, and the evaluated patterns are passed to
+ * the result listener, if any, by a separate thread. When that thread falls
+ * behind by too many patterns, the workers pass them to the listener
+ * themselves, one at a time. The evaluators are released when the search
+ * ends.
+ * <p>
+ * With pruning enabled, patterns are evaluated with the best value found so far
+ * as bound (see {@link PatternEvaluator#evaluate(SlotPattern, double)}), and the
+ * best value can be read during the search to prune the pattern space itself.
+ * The patterns whose value reaches the bound are pruned: only a lower bound of
+ * their value is known, so they are passed to
+ * {@link PatternResultListener#onPruned(SlotPattern, double)} and logged as
+ * pruned by the checkpoint, never as evaluated.
+ * <p>
+ * When the evaluators are {@link MultiObjectiveEvaluator}s, the best pattern is
+ * the one with the lowest primary value, the result listener receives all the
+ * values, and the patterns can be offered to a {@link ParetoFront}.
+ * <p>
+ * With a {@link SearchCheckpoint}, each evaluation is appended to its log, and
+ * the patterns already in the log are not evaluated again: their logged values
+ * are used, and passed to the result listener, as if they had been evaluated.
+ * The patterns logged as pruned are skipped, since the pattern that pruned them
+ * is in the log too.
+ */
+public class PatternSearch {
+
+	private static final int MAX_SURPLUS_TASKS = 2;
+	private static final int MAX_PENDING_RESULTS = 1024;
+
+	private final Supplier<? extends PatternEvaluator> evaluatorFactory;
+	private ForkJoinPool pool;
+	private PatternResultListener resultListener;
+	private boolean pruning;
+	private ParetoFront paretoFront;
+	private SearchCheckpoint checkpoint;
+	private ProgressListener progressListener;
+	private long expectedPatterns = -1;
+	private volatile Search running;
+
+	/**
+	 * It builds a search that runs on the common {@link ForkJoinPool}.
+	 *
+	 * @param evaluatorFactory the factory of the evaluators, called once for each
+	 *                         worker thread
+	 */
+	public PatternSearch(Supplier<? extends PatternEvaluator> evaluatorFactory) {
+		if (evaluatorFactory == null)
+			throw new IllegalArgumentException("evaluatorFactory cannot be null.");
+		this.evaluatorFactory = evaluatorFactory;
+		this.pool = ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * @param pool the pool running the workers
+	 * @return the search itself, to allow iterative calls
+	 */
+	public PatternSearch setPool(ForkJoinPool pool) {
+		if (pool == null)
+			throw new IllegalArgumentException("pool cannot be null.");
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * @param resultListener the listener of the evaluated patterns, or null
+	 * @return the search itself, to allow iterative calls
+	 */
+	public PatternSearch setResultListener(PatternResultListener resultListener) {
+		this.resultListener = resultListener;
+		return this;
+	}
+
+	/**
+	 * @param pruning true if patterns not better than the best one found so far
+	 *                can be evaluated partially; in that case they are passed to
+	 *                {@link PatternResultListener#onPruned(SlotPattern, double)}
+	 *                with a lower bound of their values. It is not supported by
+	 *                {@link MultiObjectiveEvaluator}s, that always evaluate every
+	 *                objective: a search with both fails before evaluating any
+	 *                pattern
+	 * @return the search itself, to allow iterative calls
+	 */
+	public PatternSearch setPruning(boolean pruning) {
+		this.pruning = pruning;
+		return this;
+	}
+
+	/**
+	 * @param paretoFront the front receiving the values of the patterns evaluated
+	 *                    by {@link MultiObjectiveEvaluator}s, or null
+	 * @return the search itself, to allow iterative calls
+	 */
+	public PatternSearch setParetoFront(ParetoFront paretoFront) {
+		this.paretoFront = paretoFront;
+		return this;
+	}
+
+	/**
+	 * @param checkpoint the checkpoint recording the evaluations and providing the
+	 *                   ones of a previous run, or null
+	 * @return the search itself, to allow iterative calls
+	 */
+	public PatternSearch setCheckpoint(SearchCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+		return this;
+	}
+
+	/**
+	 * It sets the listener of the progress of the search, in evaluated patterns.
+	 * The listener is called by the worker threads; if it cancels the search,
+	 * the workers stop at their next pattern and
+	 * {@link #search(Spliterator)} throws an
+	 * {@link org.oristool.omnibus.progress.AnalysisCancelledException}.
+	 *
+	 * @param progressListener the listener, or null
+	 * @return the search itself, to allow iterative calls
+	 */
+	public PatternSearch setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	/**
+	 * @param expectedPatterns the number of patterns reported as total to the
+	 *                         progress listener when the spliterator does not
+	 *                         know its size, or -1 if unknown
+	 * @return the search itself, to allow iterative calls
+	 */
+	public PatternSearch setExpectedPatterns(long expectedPatterns) {
+		this.expectedPatterns = expectedPatterns;
+		return this;
+	}
+
+	/**
+	 * It returns the best value found so far by the running search, so that the
+	 * source of patterns can skip the ones that cannot improve it.
+	 *
+	 * @return the best value, or positive infinity if no search is running or no
+	 *         pattern was evaluated yet
+	 */
+	public double getCurrentBestValue() {
+		Search search = running;
+		return search == null ? Double.POSITIVE_INFINITY : search.best.get().bestValue;
+	}
+
+	/**
+	 * It evaluates all the patterns and returns the best one. The method returns
+	 * after the result listener has received every evaluated pattern, and the
+	 * checkpoint, if any, has written them to its log.
+	 *
+	 * @param patterns the patterns to evaluate
+	 * @return the result of the search
+	 * @throws UncheckedIOException  if the checkpoint cannot be written
+	 * @throws IllegalStateException if pruning is enabled and the evaluators are
+	 *                               {@link MultiObjectiveEvaluator}s
+	 */
+	public Result search(Spliterator<SlotPattern> patterns) {
+		// the evaluator built for the check is used by the first worker
+		PatternEvaluator firstEvaluator = null;
+		if (pruning) {
+			firstEvaluator = evaluatorFactory.get();
+			if (firstEvaluator instanceof MultiObjectiveEvaluator)
+				throw new IllegalStateException("Pruning is not supported by multi-objective evaluators.");
+		}
+		long size = patterns.getExactSizeIfKnown();
+		Search search = new Search(new ProgressTracker(progressListener, "Pattern search",
+				size >= 0 ? size : expectedPatterns), firstEvaluator);
+		running = search;
+		try {
+			pool.invoke(search.new SearchTask(patterns));
+			search.progress.finish();
+		} catch (CancellationException e) {
+			search.progress.checkCancelled();
+			throw e;
+		} finally {
+			running = null;
+			try {
+				search.close();
+			} finally {
+				flushCheckpoint();
+			}
+		}
+		return search.getResult();
+	}
+
+	private void flushCheckpoint() {
+		if (checkpoint == null)
+			return;
+		try {
+			checkpoint.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * The result of a search.
+	 */
+	public static final class Result {
+
+		private final SlotPattern bestPattern;
+		private final double bestValue;
+		private final long evaluatedPatterns;
+
+		Result(SlotPattern bestPattern, double bestValue, long evaluatedPatterns) {
+			this.bestPattern = bestPattern;
+			this.bestValue = bestValue;
+			this.evaluatedPatterns = evaluatedPatterns;
+		}
+
+		/**
+		 * @return the pattern with the lowest value, or null if no pattern was
+		 *         evaluated
+		 */
+		public SlotPattern getBestPattern() {
+			return bestPattern;
+		}
+
+		/**
+		 * @return the value of the best pattern, or positive infinity if no pattern
+		 *         was evaluated
+		 */
+		public double getBestValue() {
+			return bestValue;
+		}
+
+		/**
+		 * @return the number of evaluated patterns
+		 */
+		public long getEvaluatedPatterns() {
+			return evaluatedPatterns;
+		}
+
+		@Override
+		public String toString() {
+			return "Result [bestPattern=" + bestPattern + ", bestValue=" + bestValue + ", evaluatedPatterns="
+					+ evaluatedPatterns + "]";
+		}
+	}
+
+	/**
+	 * The state of a single call to {@link PatternSearch#search(Spliterator)}.
+	 */
+	private final class Search {
+
+		// an evaluator for each worker thread, released by close
+		private final ConcurrentHashMap<Thread, PatternEvaluator> evaluators = new ConcurrentHashMap<>();
+		private final AtomicReference<PatternEvaluator> firstEvaluator;
+		// set when a task fails, so that the other tasks stop at their next pattern
+		private volatile boolean failed;
+		private final AtomicReference<Result> best = new AtomicReference<>(
+				new Result(null, Double.POSITIVE_INFINITY, 0));
+		private final LongAdder evaluatedPatterns = new LongAdder();
+		private final AtomicReference<RuntimeException> listenerFailure = new AtomicReference<>();
+		private final ExecutorService resultWriter;
+		private final Object listenerLock = new Object();
+		private final PatternResultListener listener;
+		private final boolean pruning;
+		private final ParetoFront paretoFront;
+		private final SearchCheckpoint checkpoint;
+		private final ProgressTracker progress;
+
+		private Search(ProgressTracker progress, PatternEvaluator firstEvaluator) {
+			this.progress = progress;
+			this.firstEvaluator = new AtomicReference<>(firstEvaluator);
+			this.listener = resultListener;
+			this.pruning = PatternSearch.this.pruning;
+			this.paretoFront = PatternSearch.this.paretoFront;
+			this.checkpoint = PatternSearch.this.checkpoint;
+			// when the listener falls behind, the workers call it themselves
+			this.resultWriter = listener == null ? null
+					: new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+							new ArrayBlockingQueue<>(MAX_PENDING_RESULTS), r -> {
+								Thread thread = new Thread(r, "pattern-search-results");
+								thread.setDaemon(true);
+								return thread;
+							}, new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+
+		private PatternEvaluator getEvaluator() {
+			// only the current thread adds its own key, so get and put do not race
+			Thread thread = Thread.currentThread();
+			PatternEvaluator evaluator = evaluators.get(thread);
+			if (evaluator == null) {
+				evaluator = firstEvaluator.getAndSet(null);
+				if (evaluator == null)
+					evaluator = evaluatorFactory.get();
+				evaluators.put(thread, evaluator);
+			}
+			return evaluator;
+		}
+
+		private void evaluate(SlotPattern pattern) {
+			Result current = best.get();
+			double[] values = checkpoint == null ? null : checkpoint.getRecoveredValues(pattern);
+			double value;
+			if (values != null) {
+				value = values[0];
+				if (values.length == 1)
+					values = null;
+				else if (paretoFront != null)
+					paretoFront.offer(pattern, values);
+				evaluatedPatterns.increment();
+				updateBest(pattern, value, current);
+				notifyAsync(pattern, value, values);
+				progress.advance(1);
+				return;
+			}
+			double lowerBound = checkpoint == null ? Double.NaN : checkpoint.getRecoveredLowerBound(pattern);
+			if (!Double.isNaN(lowerBound)) {
+				evaluatedPatterns.increment();
+				notifyPrunedAsync(pattern, lowerBound);
+				progress.advance(1);
+				return;
+			}
+
+			PatternEvaluator evaluator = getEvaluator();
+			if (evaluator instanceof MultiObjectiveEvaluator) {
+				values = ((MultiObjectiveEvaluator) evaluator).evaluateAll(pattern);
+				value = values[0];
+				if (paretoFront != null)
+					paretoFront.offer(pattern, values);
+			} else if (pruning && current.bestValue < Double.POSITIVE_INFINITY) {
+				value = evaluator.evaluate(pattern, current.bestValue);
+				if (value >= current.bestValue) {
+					// the evaluation may have stopped at the bound, value is only a lower bound
+					evaluatedPatterns.increment();
+					recordPruned(pattern, value);
+					notifyPrunedAsync(pattern, value);
+					progress.advance(1);
+					return;
+				}
+			} else {
+				value = evaluator.evaluate(pattern);
+			}
+			evaluatedPatterns.increment();
+
+			if (checkpoint != null) {
+				try {
+					checkpoint.record(pattern, values != null ? values : new double[] { value });
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			updateBest(pattern, value, current);
+			notifyAsync(pattern, value, values);
+			progress.advance(1);
+		}
+
+		private void recordPruned(SlotPattern pattern, double lowerBound) {
+			if (checkpoint == null)
+				return;
+			try {
+				checkpoint.recordPruned(pattern, lowerBound);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void updateBest(SlotPattern pattern, double value, Result current) {
+			while (value < current.bestValue && !best.compareAndSet(current, new Result(pattern, value, 0))) {
+				current = best.get();
+			}
+		}
+
+		private void notifyAsync(SlotPattern pattern, double value, double[] values) {
+			if (resultWriter != null)
+				resultWriter.execute(() -> notifyListener(pattern, value, values));
+		}
+
+		private void notifyPrunedAsync(SlotPattern pattern, double lowerBound) {
+			if (resultWriter != null)
+				resultWriter.execute(() -> callListener(() -> listener.onPruned(pattern, lowerBound)));
+		}
+
+		private void notifyListener(SlotPattern pattern, double value, double[] values) {
+			callListener(() -> {
+				if (values != null)
+					listener.onResult(pattern, values);
+				else
+					listener.onResult(pattern, value);
+			});
+		}
+
+		/*
+		 * The listener is called by the result thread or, when the queue is full, by
+		 * a worker: the lock keeps the calls sequential.
+		 */
+		private void callListener(Runnable call) {
+			synchronized (listenerLock) {
+				if (listenerFailure.get() != null)
+					return;
+				try {
+					call.run();
+				} catch (RuntimeException e) {
+					listenerFailure.compareAndSet(null, e);
+				}
+			}
+		}
+
+		private void close() {
+			evaluators.clear();
+			firstEvaluator.set(null);
+			if (resultWriter == null)
+				return;
+			resultWriter.shutdown();
+			try {
+				resultWriter.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the result listener.", e);
+			}
+			if (listenerFailure.get() != null)
+				throw listenerFailure.get();
+		}
+
+		private Result getResult() {
+			Result result = best.get();
+			return new Result(result.bestPattern, result.bestValue, evaluatedPatterns.sum());
+		}
+
+		/**
+		 * It splits its patterns while the pool has idle workers, then evaluates the
+		 * remaining ones, checking for idle workers again after each pattern. The
+		 * forked tasks are always joined, also when an evaluation fails, so that no
+		 * task outlives the search.
+		 */
+		private final class SearchTask extends RecursiveAction {
+
+			private static final long serialVersionUID = 1L;
+
+			private final Spliterator<SlotPattern> patterns;
+
+			private SearchTask(Spliterator<SlotPattern> patterns) {
+				this.patterns = patterns;
+			}
+
+			@Override
+			protected void compute() {
+				Deque<SearchTask> forked = new ArrayDeque<>();
+				try {
+					boolean remaining = true;
+					while (remaining && !failed) {
+						Spliterator<SlotPattern> split;
+						if (getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS
+								&& (split = patterns.trySplit()) != null) {
+							SearchTask task = new SearchTask(split);
+							task.fork();
+							forked.push(task);
+						} else {
+							remaining = patterns.tryAdvance(Search.this::evaluate);
+						}
+					}
+				} catch (RuntimeException | Error e) {
+					failed = true;
+					throw e;
+				} finally {
+					for (SearchTask task : forked) {
+						task.quietlyJoin();
+					}
+				}
+				for (SearchTask task : forked) {
+					task.join();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,356 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * It persists the progress of a {@link PatternSearch} in an append-only binary
+ * log, so that a killed search can be resumed: a search using the checkpoint
+ * does not evaluate again the patterns found in the log, and takes their values
+ * from it instead.
+ * <p>
+ * The log starts with a header, holding a fingerprint of the inputs of the
+ * search (scenario, time step, slot durations, objective...), and contains one
+ * record for each evaluated pattern, with its slots and either its values or,
+ * for a pattern pruned by a search, the lower bound of its value. A log written
+ * for a different fingerprint is never resumed, and the log is deleted by
+ * {@link #delete()} once the search completes, so that a later run does not
+ * replay it. Each record is prefixed by its length
+ * and followed by its CRC-32, so that a record truncated by a crash is detected
+ * and discarded when the log is opened. Records are buffered and written to the
+ * file at most every {@link #DEFAULT_FLUSH_INTERVAL_MILLIS} milliseconds (or the
+ * interval set) and forced to the storage device, so a crash loses at most the
+ * evaluations of that interval.
+ * <p>
+ * The position of a parallel enumeration is not a single cursor, so the log
+ * does not store it: a resumed search enumerates the patterns again and skips
+ * the evaluated ones, which is cheap compared to their evaluation. The best
+ * pattern is recovered from the values of the log.
+ */
+public class SearchCheckpoint implements Closeable {
+
+	/**
+	 * The default maximum time between two writes of the buffered records.
+	 */
+	public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+	private static final int MAGIC = 0x4F4D4E42;
+	private static final int VERSION = 3;
+	private static final int PRUNED = -1;
+
+	private final Path file;
+	private final String fingerprint;
+	private final Map<SlotPattern, double[]> recovered = new ConcurrentHashMap<>();
+	private final Map<SlotPattern, Double> recoveredPruned = new ConcurrentHashMap<>();
+	private final long discardedBytes;
+	private final FileChannel channel;
+	private final DataOutputStream out;
+	private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+	private long lastFlush;
+
+	private SearchCheckpoint(Path file, String fingerprint) throws IOException {
+		this.file = file;
+		this.fingerprint = fingerprint;
+		long validLength = Files.exists(file) ? recover() : 0;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			this.discardedBytes = channel.size() - validLength;
+			channel.truncate(validLength);
+			channel.position(validLength);
+			this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+			if (validLength == 0) {
+				out.write(header(fingerprint));
+				out.flush();
+				channel.force(false);
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		this.lastFlush = System.currentTimeMillis();
+	}
+
+	/**
+	 * It opens a checkpoint, reading the records of an existing log or creating a
+	 * new one. A truncated or corrupted tail of the log is removed.
+	 *
+	 * @param file        the log file
+	 * @param fingerprint a description of all the inputs that determine the values
+	 *                    of the patterns, such as the scenario, the time step, the
+	 *                    slot durations and the objective
+	 * @return the checkpoint, ready to record new evaluations
+	 * @throws IOException if the file cannot be read or written, it is not a
+	 *                     checkpoint log, or it was written for a different
+	 *                     fingerprint
+	 */
+	public static SearchCheckpoint open(Path file, String fingerprint) throws IOException {
+		if (fingerprint == null)
+			throw new IllegalArgumentException("fingerprint cannot be null.");
+		return new SearchCheckpoint(file, fingerprint);
+	}
+
+	/**
+	 * @param flushIntervalMillis the maximum time between two writes of the
+	 *                            buffered records, in milliseconds
+	 * @return the checkpoint itself, to allow iterative calls
+	 */
+	public synchronized SearchCheckpoint setFlushInterval(long flushIntervalMillis) {
+		if (flushIntervalMillis < 0)
+			throw new IllegalArgumentException("flushIntervalMillis must be equal or greater than zero.");
+		this.flushIntervalMillis = flushIntervalMillis;
+		return this;
+	}
+
+	/**
+	 * @return the log file
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the fingerprint of the inputs of the search
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * @return the number of evaluated or pruned patterns read from the log when it
+	 *         was opened
+	 */
+	public int getRecoveredPatterns() {
+		return recovered.size() + recoveredPruned.size();
+	}
+
+	/**
+	 * @return the number of bytes of a truncated or corrupted tail removed when the
+	 *         log was opened
+	 */
+	public long getDiscardedBytes() {
+		return discardedBytes;
+	}
+
+	/**
+	 * It returns the values of a pattern read from the log when it was opened.
+	 *
+	 * @param pattern the pattern
+	 * @return a copy of the values, or null if the pattern was not in the log
+	 */
+	public double[] getRecoveredValues(SlotPattern pattern) {
+		double[] values = recovered.get(pattern);
+		return values == null ? null : values.clone();
+	}
+
+	/**
+	 * It returns the lower bound of a pattern pruned by the search, read from the
+	 * log when it was opened.
+	 *
+	 * @param pattern the pattern
+	 * @return the lower bound of the value of the pattern, or NaN if the pattern
+	 *         was not logged as pruned
+	 */
+	public double getRecoveredLowerBound(SlotPattern pattern) {
+		Double lowerBound = recoveredPruned.get(pattern);
+		return lowerBound == null ? Double.NaN : lowerBound;
+	}
+
+	/**
+	 * It appends the evaluation of a pattern to the log.
+	 *
+	 * @param pattern the evaluated pattern
+	 * @param values  the values of the pattern
+	 * @throws IOException if the log cannot be written
+	 */
+	public synchronized void record(SlotPattern pattern, double... values) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(bytes);
+		writeSlots(payload, pattern);
+		payload.writeInt(values.length);
+		for (double value : values) {
+			payload.writeDouble(value);
+		}
+		append(bytes.toByteArray());
+	}
+
+	/**
+	 * It appends to the log a pattern whose evaluation was stopped because it
+	 * could not improve the best one, so that only a lower bound of its value is
+	 * known.
+	 *
+	 * @param pattern    the pruned pattern
+	 * @param lowerBound the lower bound of the value of the pattern
+	 * @throws IOException if the log cannot be written
+	 */
+	public synchronized void recordPruned(SlotPattern pattern, double lowerBound) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream payload = new DataOutputStream(bytes);
+		writeSlots(payload, pattern);
+		payload.writeInt(PRUNED);
+		payload.writeDouble(lowerBound);
+		append(bytes.toByteArray());
+	}
+
+	private static void writeSlots(DataOutputStream payload, SlotPattern pattern) throws IOException {
+		payload.writeInt(pattern.getSlotCount());
+		for (int i = 0; i < pattern.getSlotCount(); i++) {
+			payload.writeByte(pattern.getFlow(i));
+			payload.writeInt(pattern.getDuration(i));
+		}
+	}
+
+	private void append(byte[] record) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(record);
+
+		out.writeInt(record.length);
+		out.write(record);
+		out.writeInt((int) crc.getValue());
+
+		if (System.currentTimeMillis() - lastFlush >= flushIntervalMillis)
+			flush();
+	}
+
+	/**
+	 * It writes the buffered records to the file and forces them to the storage
+	 * device.
+	 *
+	 * @throws IOException if the log cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		out.flush();
+		channel.force(false);
+		lastFlush = System.currentTimeMillis();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (!channel.isOpen())
+			return;
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * It closes the checkpoint and deletes its log. It must be called once the
+	 * search has completed, so that a later run evaluates the patterns again
+	 * instead of replaying the log.
+	 *
+	 * @throws IOException if the log cannot be deleted
+	 */
+	public synchronized void delete() throws IOException {
+		out.close();
+		Files.deleteIfExists(file);
+	}
+
+	private static byte[] header(String fingerprint) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(bytes);
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeUTF(fingerprint);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * It reads the records of the log and returns the length of its valid part.
+	 */
+	private long recover() throws IOException {
+		long fileLength = Files.size(file);
+		try (InputStream stream = Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ));
+				DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+			long validLength;
+			try {
+				if (in.readInt() != MAGIC)
+					throw new IOException(file + " is not a pattern search checkpoint.");
+				int version = in.readInt();
+				if (version != VERSION)
+					throw new IOException("Unsupported checkpoint version " + version + " in " + file + ".");
+				String logged = in.readUTF();
+				if (!logged.equals(fingerprint))
+					throw new IOException(file + " was written for a different search: expected [" + fingerprint
+							+ "], found [" + logged + "]. Delete it to start again.");
+				validLength = header(logged).length;
+			} catch (EOFException e) {
+				// the header itself was truncated
+				return 0;
+			}
+
+			while (true) {
+				try {
+					int length = in.readInt();
+					if (length < 8 || length > fileLength - validLength - 8)
+						return validLength;
+					byte[] record = new byte[length];
+					in.readFully(record);
+					int expected = in.readInt();
+					CRC32 crc = new CRC32();
+					crc.update(record);
+					if ((int) crc.getValue() != expected)
+						return validLength;
+					readRecord(record);
+					validLength += 4 + length + 4;
+				} catch (EOFException e) {
+					return validLength;
+				}
+			}
+		}
+	}
+
+	private void readRecord(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		int slotCount = in.readInt();
+		SlotPattern.Builder builder = new SlotPattern.Builder();
+		for (int i = 0; i < slotCount; i++) {
+			int flow = in.readUnsignedByte();
+			builder.add(flow, in.readInt());
+		}
+		int valueCount = in.readInt();
+		if (valueCount == PRUNED) {
+			recoveredPruned.put(builder.build(), in.readDouble());
+			return;
+		}
+		double[] values = new double[valueCount];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readDouble();
+		}
+		recovered.put(builder.build(), values);
+	}
+
+}
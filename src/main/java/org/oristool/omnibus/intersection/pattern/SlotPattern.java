@@ -0,0 +1,321 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.intersection.pattern;
+
+import org.oristool.omnibus.intersection.CarSemaphore;
+
+import java.util.Arrays;
+
+/**
+ * It models a semaphore pattern, i.e. the assignment of the green light to the
+ * car flows of an intersection along one period, as a list of slots. Each slot
+ * is a flow id and a duration in seconds, packed in a single int; the id
+ * {@link #RED} means red for all flows.
+ * <p>
+ * Adjacent slots of the same flow are merged, so that two patterns are equal if
+ * and only if they assign the same flow to every second. Instances are
+ * immutable and their hash code is computed once.
+ */
+public final class SlotPattern {
+
+	/**
+	 * The flow id meaning red for all flows.
+	 */
+	public static final int RED = 255;
+
+	/**
+	 * The maximum number of flows a pattern can serve, with ids from zero.
+	 */
+	public static final int MAX_FLOWS = RED;
+
+	/**
+	 * The character representing red for all flows in digit strings.
+	 */
+	public static final char RED_DIGIT = '9';
+
+	private static final int DURATION_BITS = 24;
+	private static final int DURATION_MASK = (1 << DURATION_BITS) - 1;
+
+	private final int[] slots;
+	private final int period;
+	private final int hash;
+
+	private SlotPattern(int[] slots) {
+		this.slots = slots;
+		int total = 0;
+		for (int slot : slots) {
+			total += slot & DURATION_MASK;
+		}
+		this.period = total;
+		this.hash = Arrays.hashCode(slots);
+	}
+
+	/**
+	 * It builds a pattern from its slots.
+	 *
+	 * @param flows     the flow id of each slot, in [0, {@link #MAX_FLOWS}) or
+	 *                  {@link #RED}
+	 * @param durations the duration in seconds of each slot
+	 * @return the pattern
+	 */
+	public static SlotPattern of(int[] flows, int[] durations) {
+		if (flows.length != durations.length)
+			throw new IllegalArgumentException("flows and durations must have the same length.");
+		Builder builder = new Builder();
+		for (int i = 0; i < flows.length; i++) {
+			builder.add(flows[i], durations[i]);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * It builds a pattern from the flow id of each second of the period.
+	 *
+	 * @param flowIds the flow ids, read as unsigned bytes
+	 * @return the pattern
+	 */
+	public static SlotPattern fromFlowIds(byte[] flowIds) {
+		Builder builder = new Builder();
+		for (byte flowId : flowIds) {
+			builder.add(flowId & 0xFF, 1);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * It builds a pattern from a string where each character is the digit of the
+	 * flow served in one second, and {@link #RED_DIGIT} means red for all.
+	 *
+	 * @param digits the string of digits (ex. "000999111999")
+	 * @return the pattern
+	 */
+	public static SlotPattern fromDigits(String digits) {
+		Builder builder = new Builder();
+		for (int i = 0; i < digits.length(); i++) {
+			char c = digits.charAt(i);
+			if (c < '0' || c > '9')
+				throw new IllegalArgumentException("Unexpected character '" + c + "' in pattern " + digits);
+			builder.add(c == RED_DIGIT ? RED : c - '0', 1);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * It applies the pattern to the semaphores of the flows: each semaphore is
+	 * green in the slots of its flow and red elsewhere, as in
+	 * {@link CarSemaphore#applySchedule(int[], CarSemaphore...)}.
+	 *
+	 * @param carSemaphores the semaphores, indexed by flow id
+	 * @throws IllegalArgumentException if a slot serves a flow with no semaphore
+	 */
+	public void applyTo(CarSemaphore... carSemaphores) {
+		int[] schedule = new int[2 * slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			int flow = slots[i] >>> DURATION_BITS;
+			schedule[2 * i] = flow == RED ? -1 : flow;
+			schedule[2 * i + 1] = slots[i] & DURATION_MASK;
+		}
+		CarSemaphore.applySchedule(schedule, carSemaphores);
+	}
+
+	/**
+	 * @return the number of slots
+	 */
+	public int getSlotCount() {
+		return slots.length;
+	}
+
+	/**
+	 * @param slot the index of the slot
+	 * @return the flow id of the slot
+	 */
+	public int getFlow(int slot) {
+		return slots[slot] >>> DURATION_BITS;
+	}
+
+	/**
+	 * @param slot the index of the slot
+	 * @return the duration in seconds of the slot
+	 */
+	public int getDuration(int slot) {
+		return slots[slot] & DURATION_MASK;
+	}
+
+	/**
+	 * @return the period of the pattern, i.e. the sum of the slot durations
+	 */
+	public int getPeriod() {
+		return period;
+	}
+
+	/**
+	 * @return the flow id of each second of the period
+	 */
+	public byte[] toFlowIds() {
+		byte[] flowIds = new byte[period];
+		int start = 0;
+		for (int slot : slots) {
+			int end = start + (slot & DURATION_MASK);
+			Arrays.fill(flowIds, start, end, (byte) (slot >>> DURATION_BITS));
+			start = end;
+		}
+		return flowIds;
+	}
+
+	/**
+	 * @return true if the pattern can be represented as a string of digits, i.e.
+	 *         it serves only flows with ids lower than nine
+	 */
+	public boolean isDigitRepresentable() {
+		for (int slot : slots) {
+			int flow = slot >>> DURATION_BITS;
+			if (flow != RED && flow >= RED_DIGIT - '0')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * It returns the pattern as a string where each character is the digit of the
+	 * flow served in one second, and {@link #RED_DIGIT} means red for all.
+	 *
+	 * @return the string of digits
+	 */
+	public String toDigits() {
+		if (!isDigitRepresentable())
+			throw new IllegalStateException("Flow ids greater than eight cannot be represented as digits.");
+		StringBuilder sb = new StringBuilder(period);
+		for (int slot : slots) {
+			int flow = slot >>> DURATION_BITS;
+			char c = flow == RED ? RED_DIGIT : (char) ('0' + flow);
+			for (int i = 0; i < (slot & DURATION_MASK); i++) {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		SlotPattern other = (SlotPattern) obj;
+		return hash == other.hash && Arrays.equals(slots, other.slots);
+	}
+
+	/**
+	 * It returns the digit string of the pattern when possible, otherwise a list
+	 * of "flow:duration" slots separated by "|".
+	 */
+	@Override
+	public String toString() {
+		if (isDigitRepresentable())
+			return toDigits();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < slots.length; i++) {
+			if (i > 0)
+				sb.append('|');
+			sb.append(getFlow(i)).append(':').append(getDuration(i));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A builder of patterns, that appends slots one after the other.
+	 */
+	public static final class Builder {
+
+		private int[] slots = new int[8];
+		private int size = 0;
+
+		/**
+		 * It appends a slot, merging it with the previous one if it serves the same
+		 * flow. Slots with zero duration are ignored.
+		 *
+		 * @param flow     the flow id, in [0, {@link #MAX_FLOWS}) or {@link #RED}
+		 * @param duration the duration in seconds
+		 * @return the builder itself, to allow iterative calls
+		 */
+		public Builder add(int flow, int duration) {
+			if (flow < 0 || flow > RED)
+				throw new IllegalArgumentException("flow must be in [0, " + RED + "].");
+			if (duration < 0 || duration > DURATION_MASK)
+				throw new IllegalArgumentException("duration must be in [0, " + DURATION_MASK + "].");
+			if (duration == 0)
+				return this;
+			if (size > 0 && slots[size - 1] >>> DURATION_BITS == flow) {
+				int merged = (slots[size - 1] & DURATION_MASK) + duration;
+				if (merged > DURATION_MASK)
+					throw new IllegalArgumentException("duration must be in [0, " + DURATION_MASK + "].");
+				slots[size - 1] = (flow << DURATION_BITS) | merged;
+				return this;
+			}
+			if (size == slots.length)
+				slots = Arrays.copyOf(slots, 2 * size);
+			slots[size++] = (flow << DURATION_BITS) | duration;
+			return this;
+		}
+
+		/**
+		 * It removes the last slot, if any. Since {@link #add(int, int)} merges
+		 * consecutive slots of the same flow, the removed slot is the whole merged
+		 * one, with the durations of all the slots added for its flow in a row.
+		 *
+		 * @return the builder itself, to allow iterative calls
+		 */
+		public Builder removeLastSlot() {
+			if (size > 0)
+				size--;
+			return this;
+		}
+
+		/**
+		 * @return the number of slots added so far, after merging
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @return a copy of the builder, that can be extended independently
+		 */
+		public Builder copy() {
+			Builder copy = new Builder();
+			copy.slots = Arrays.copyOf(slots, Math.max(size, 1));
+			copy.size = size;
+			return copy;
+		}
+
+		/**
+		 * @return the pattern made of the slots added so far
+		 */
+		public SlotPattern build() {
+			return new SlotPattern(Arrays.copyOf(slots, size));
+		}
+	}
+
+}
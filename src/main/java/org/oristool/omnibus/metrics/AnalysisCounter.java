@@ -0,0 +1,72 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.metrics;
+
+/**
+ * The counters of the analyses recorded by a {@link MetricsRegistry}.
+ */
+public enum AnalysisCounter {
+
+	/**
+	 * The queue transient analyses.
+	 */
+	TRANSIENT_ANALYSES,
+
+	/**
+	 * The time steps of the queue transient analyses.
+	 */
+	TRANSIENT_STEPS,
+
+	/**
+	 * The state probabilities computed by the queue transient analyses, i.e. the
+	 * time steps times the states of the queue with denials.
+	 */
+	TRANSIENT_STATE_UPDATES,
+
+	/**
+	 * The steady state analyses of car flows.
+	 */
+	STEADY_STATE_ANALYSES,
+
+	/**
+	 * The transient analyses of tram track Petri nets.
+	 */
+	TRAM_PETRI_NET_ANALYSES,
+
+	/**
+	 * The green probabilities of tram tracks derived by shifting the one of an
+	 * equal track already analyzed, without a new Petri net analysis.
+	 */
+	TRAM_SHIFT_REUSES,
+
+	/**
+	 * The tram crossing availabilities served by resampling a finer analysis.
+	 */
+	TRAM_RESAMPLES,
+
+	/**
+	 * The per-flow results found in a flow result cache.
+	 */
+	FLOW_CACHE_HITS,
+
+	/**
+	 * The per-flow results computed because not found in a flow result cache.
+	 */
+	FLOW_CACHE_MISSES
+
+}
@@ -0,0 +1,53 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.metrics;
+
+/**
+ * The stages of the analyses whose durations are recorded by a
+ * {@link MetricsRegistry}.
+ */
+public enum AnalysisStage {
+
+	/**
+	 * The product of the availabilities of the obstacles of a car flow.
+	 */
+	AVAILABILITY,
+
+	/**
+	 * The construction of the pkj matrix, one transient analysis per initial
+	 * number of cars.
+	 */
+	PKJ_MATRIX,
+
+	/**
+	 * The solution of the chain of the pkj matrix, by the DTMC solver or by power
+	 * iteration.
+	 */
+	STEADY_STATE_SOLVE,
+
+	/**
+	 * The time stepping of a queue transient analysis.
+	 */
+	TRANSIENT,
+
+	/**
+	 * The transient analysis of the Petri net of a tram track.
+	 */
+	TRAM_PETRI_NET
+
+}
@@ -0,0 +1,97 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This is a registry that accumulates durations and counters in
+ * {@link LongAdder}s, so that threads recording at the same time do not
+ * contend. For each stage it keeps the number of executions, their total
+ * duration and the longest one.
+ */
+public class LongAdderMetricsRegistry implements MetricsRegistry {
+
+	private final LongAdder[] stageCalls = adders(AnalysisStage.values().length);
+	private final LongAdder[] stageNanos = adders(AnalysisStage.values().length);
+	private final LongAccumulator[] stageMaxNanos = new LongAccumulator[AnalysisStage.values().length];
+	private final LongAdder[] counters = adders(AnalysisCounter.values().length);
+
+	public LongAdderMetricsRegistry() {
+		for (int i = 0; i < stageMaxNanos.length; i++) {
+			stageMaxNanos[i] = new LongAccumulator(Math::max, 0);
+		}
+	}
+
+	private static LongAdder[] adders(int length) {
+		LongAdder[] adders = new LongAdder[length];
+		for (int i = 0; i < length; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	@Override
+	public long startTimer() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public void stopTimer(AnalysisStage stage, long start) {
+		long nanos = System.nanoTime() - start;
+		stageCalls[stage.ordinal()].increment();
+		stageNanos[stage.ordinal()].add(nanos);
+		stageMaxNanos[stage.ordinal()].accumulate(nanos);
+	}
+
+	@Override
+	public void increment(AnalysisCounter counter, long delta) {
+		counters[counter.ordinal()].add(delta);
+	}
+
+	@Override
+	public MetricsSnapshot snapshot() {
+		long[] calls = new long[stageCalls.length];
+		long[] nanos = new long[stageNanos.length];
+		long[] maxNanos = new long[stageMaxNanos.length];
+		for (int i = 0; i < calls.length; i++) {
+			calls[i] = stageCalls[i].sum();
+			nanos[i] = stageNanos[i].sum();
+			maxNanos[i] = stageMaxNanos[i].get();
+		}
+		long[] counts = new long[counters.length];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = counters[i].sum();
+		}
+		return new MetricsSnapshot(calls, nanos, maxNanos, counts);
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < stageCalls.length; i++) {
+			stageCalls[i].reset();
+			stageNanos[i].reset();
+			stageMaxNanos[i].reset();
+		}
+		for (LongAdder counter : counters) {
+			counter.reset();
+		}
+	}
+
+}
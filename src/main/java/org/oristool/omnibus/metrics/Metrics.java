@@ -0,0 +1,140 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This is the access point to the registry of the durations and counters of
+ * the analyses. The registry is global to the JVM and, by default, it is a
+ * {@link NoOpMetricsRegistry}, so instrumentation costs a volatile read and an
+ * empty call per stage.
+ * <p>
+ * A run can be measured with:
+ *
+ * <pre>
+ * MetricsRegistry registry = Metrics.enable();
+ * MetricsSnapshot before = registry.snapshot();
+ * // analyses
+ * MetricsSnapshot run = registry.snapshot().minus(before);
+ * </pre>
+ */
+public final class Metrics {
+
+	/**
+	 * The name under which {@link #registerMBean()} registers the JMX view.
+	 */
+	public static final String OBJECT_NAME = "org.oristool.omnibus:type=Metrics";
+
+	private static volatile MetricsRegistry registry = NoOpMetricsRegistry.INSTANCE;
+
+	private Metrics() {
+	}
+
+	/**
+	 * @return the registry in use
+	 */
+	public static MetricsRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * It sets the registry used by the analyses started from now on.
+	 *
+	 * @param registry the registry, or null to stop recording
+	 */
+	public static void setRegistry(MetricsRegistry registry) {
+		Metrics.registry = registry != null ? registry : NoOpMetricsRegistry.INSTANCE;
+	}
+
+	/**
+	 * It starts recording into a new {@link LongAdderMetricsRegistry}, unless
+	 * one is already in use.
+	 *
+	 * @return the registry in use
+	 */
+	public static synchronized MetricsRegistry enable() {
+		if (registry == NoOpMetricsRegistry.INSTANCE)
+			registry = new LongAdderMetricsRegistry();
+		return registry;
+	}
+
+	/**
+	 * It stops recording.
+	 */
+	public static void disable() {
+		setRegistry(null);
+	}
+
+	/**
+	 * It registers in the platform MBean server a {@link MetricsMXBean} that
+	 * shows the registry in use at each call, unless already registered.
+	 *
+	 * @return the name of the MXBean
+	 */
+	public static synchronized ObjectName registerMBean() {
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (!server.isRegistered(name))
+				server.registerMBean(new RegistryMXBean(), name);
+			return name;
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register the metrics MXBean.", e);
+		}
+	}
+
+	private static class RegistryMXBean implements MetricsMXBean {
+
+		@Override
+		public Map<String, Long> getStageCalls() {
+			return registry.snapshot().getStageCalls();
+		}
+
+		@Override
+		public Map<String, Long> getStageNanos() {
+			return registry.snapshot().getStageNanos();
+		}
+
+		@Override
+		public Map<String, Long> getStageMaxNanos() {
+			return registry.snapshot().getStageMaxNanos();
+		}
+
+		@Override
+		public Map<String, Long> getCounters() {
+			return registry.snapshot().getCounters();
+		}
+
+		@Override
+		public String getRegistryType() {
+			return registry.getClass().getSimpleName();
+		}
+
+		@Override
+		public void reset() {
+			registry.reset();
+		}
+	}
+
+}
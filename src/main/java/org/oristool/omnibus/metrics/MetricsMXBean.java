@@ -0,0 +1,59 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the registry in use, registered by
+ * {@link Metrics#registerMBean()}.
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * @return the number of executions of each stage
+	 */
+	Map<String, Long> getStageCalls();
+
+	/**
+	 * @return the total duration of the executions of each stage, in nanoseconds
+	 */
+	Map<String, Long> getStageNanos();
+
+	/**
+	 * @return the duration of the longest execution of each stage, in
+	 *         nanoseconds
+	 */
+	Map<String, Long> getStageMaxNanos();
+
+	/**
+	 * @return the value of each counter
+	 */
+	Map<String, Long> getCounters();
+
+	/**
+	 * @return the class of the registry in use
+	 */
+	String getRegistryType();
+
+	/**
+	 * It clears the values recorded so far.
+	 */
+	void reset();
+
+}
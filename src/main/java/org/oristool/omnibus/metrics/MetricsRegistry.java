@@ -0,0 +1,65 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.metrics;
+
+/**
+ * This is the interface of the registries of the durations and counters of
+ * the analyses. The analyses record into the registry returned by
+ * {@link Metrics#getRegistry()}, which by default discards everything.
+ * <p>
+ * Implementations must be thread-safe, since analyses can run in parallel.
+ */
+public interface MetricsRegistry {
+
+	/**
+	 * It starts the timing of a stage.
+	 *
+	 * @return an opaque start time, to be passed to
+	 *         {@link #stopTimer(AnalysisStage, long)}
+	 */
+	long startTimer();
+
+	/**
+	 * It records the duration of a stage.
+	 *
+	 * @param stage the stage
+	 * @param start the value returned by {@link #startTimer()} at its start
+	 */
+	void stopTimer(AnalysisStage stage, long start);
+
+	/**
+	 * It adds a delta to a counter.
+	 *
+	 * @param counter the counter
+	 * @param delta   the value to add
+	 */
+	void increment(AnalysisCounter counter, long delta);
+
+	/**
+	 * It returns the values recorded so far.
+	 *
+	 * @return an immutable snapshot of the durations and counters
+	 */
+	MetricsSnapshot snapshot();
+
+	/**
+	 * It clears the values recorded so far.
+	 */
+	void reset();
+
+}
@@ -0,0 +1,162 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This is an immutable snapshot of the durations and counters of a
+ * {@link MetricsRegistry}. Two snapshots taken before and after a run can be
+ * subtracted to get the values of the run alone.
+ */
+public final class MetricsSnapshot {
+
+	/**
+	 * A snapshot with all values equal to zero.
+	 */
+	public static final MetricsSnapshot EMPTY = new MetricsSnapshot(new long[AnalysisStage.values().length],
+			new long[AnalysisStage.values().length], new long[AnalysisStage.values().length],
+			new long[AnalysisCounter.values().length]);
+
+	private final long[] stageCalls;
+	private final long[] stageNanos;
+	private final long[] stageMaxNanos;
+	private final long[] counters;
+
+	MetricsSnapshot(long[] stageCalls, long[] stageNanos, long[] stageMaxNanos, long[] counters) {
+		this.stageCalls = stageCalls;
+		this.stageNanos = stageNanos;
+		this.stageMaxNanos = stageMaxNanos;
+		this.counters = counters;
+	}
+
+	/**
+	 * @param stage the stage
+	 * @return the number of executions of the stage
+	 */
+	public long getCalls(AnalysisStage stage) {
+		return stageCalls[stage.ordinal()];
+	}
+
+	/**
+	 * @param stage the stage
+	 * @return the total duration of the executions of the stage, in nanoseconds
+	 */
+	public long getNanos(AnalysisStage stage) {
+		return stageNanos[stage.ordinal()];
+	}
+
+	/**
+	 * @param stage the stage
+	 * @return the duration of the longest execution of the stage, in nanoseconds
+	 */
+	public long getMaxNanos(AnalysisStage stage) {
+		return stageMaxNanos[stage.ordinal()];
+	}
+
+	/**
+	 * @param counter the counter
+	 * @return the value of the counter
+	 */
+	public long getCount(AnalysisCounter counter) {
+		return counters[counter.ordinal()];
+	}
+
+	/**
+	 * It returns the difference between this snapshot and a previous one of the
+	 * same registry. The longest durations cannot be subtracted, and the ones of
+	 * this snapshot are kept.
+	 *
+	 * @param previous the previous snapshot
+	 * @return the values recorded between the two snapshots
+	 */
+	public MetricsSnapshot minus(MetricsSnapshot previous) {
+		long[] calls = new long[stageCalls.length];
+		long[] nanos = new long[stageNanos.length];
+		for (int i = 0; i < calls.length; i++) {
+			calls[i] = stageCalls[i] - previous.stageCalls[i];
+			nanos[i] = stageNanos[i] - previous.stageNanos[i];
+		}
+		long[] counts = new long[counters.length];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = counters[i] - previous.counters[i];
+		}
+		return new MetricsSnapshot(calls, nanos, stageMaxNanos, counts);
+	}
+
+	/**
+	 * It returns the values as a map, to be logged. Stages have three entries,
+	 * with keys ending in ".calls", ".nanos" and ".maxNanos", and counters have
+	 * one entry with their name.
+	 *
+	 * @return an unmodifiable map of the values, in declaration order
+	 */
+	public Map<String, Long> toMap() {
+		Map<String, Long> map = new LinkedHashMap<>();
+		map.putAll(getStageCalls());
+		map.putAll(getStageNanos());
+		map.putAll(getStageMaxNanos());
+		map.putAll(getCounters());
+		return Collections.unmodifiableMap(map);
+	}
+
+	Map<String, Long> getStageCalls() {
+		return stageMap(stageCalls, ".calls");
+	}
+
+	Map<String, Long> getStageNanos() {
+		return stageMap(stageNanos, ".nanos");
+	}
+
+	Map<String, Long> getStageMaxNanos() {
+		return stageMap(stageMaxNanos, ".maxNanos");
+	}
+
+	Map<String, Long> getCounters() {
+		Map<String, Long> map = new LinkedHashMap<>();
+		for (AnalysisCounter counter : AnalysisCounter.values()) {
+			map.put(counter.name(), counters[counter.ordinal()]);
+		}
+		return map;
+	}
+
+	private static Map<String, Long> stageMap(long[] values, String suffix) {
+		Map<String, Long> map = new LinkedHashMap<>();
+		for (AnalysisStage stage : AnalysisStage.values()) {
+			map.put(stage.name() + suffix, values[stage.ordinal()]);
+		}
+		return map;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("MetricsSnapshot [");
+		for (AnalysisStage stage : AnalysisStage.values()) {
+			sb.append(stage).append('=').append(getCalls(stage)).append(" calls/")
+					.append(getNanos(stage) / 1_000_000).append(" ms, ");
+		}
+		for (AnalysisCounter counter : AnalysisCounter.values()) {
+			sb.append(counter).append('=').append(getCount(counter)).append(", ");
+		}
+		sb.setLength(sb.length() - 2);
+		return sb.append(']').toString();
+	}
+
+}
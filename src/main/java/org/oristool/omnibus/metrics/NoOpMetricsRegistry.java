@@ -0,0 +1,56 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.metrics;
+
+/**
+ * This is the default registry, that records nothing: its timers do not even
+ * read the clock.
+ */
+public final class NoOpMetricsRegistry implements MetricsRegistry {
+
+	/**
+	 * The only instance.
+	 */
+	public static final NoOpMetricsRegistry INSTANCE = new NoOpMetricsRegistry();
+
+	private NoOpMetricsRegistry() {
+	}
+
+	@Override
+	public long startTimer() {
+		return 0;
+	}
+
+	@Override
+	public void stopTimer(AnalysisStage stage, long start) {
+	}
+
+	@Override
+	public void increment(AnalysisCounter counter, long delta) {
+	}
+
+	@Override
+	public MetricsSnapshot snapshot() {
+		return MetricsSnapshot.EMPTY;
+	}
+
+	@Override
+	public void reset() {
+	}
+
+}
@@ -0,0 +1,93 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.progress;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * It is thrown by an analysis stopped before its end, either by a
+ * {@link CancellationToken} or by a {@link ProgressListener}. It can carry the
+ * partial result computed so far, whose type is documented by each analysis.
+ */
+public class AnalysisCancelledException extends CancellationException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The reasons why an analysis can be stopped.
+	 */
+	public enum Reason {
+		/**
+		 * The analysis was cancelled by a token or a progress listener.
+		 */
+		CANCELLED("cancelled"),
+		/**
+		 * The deadline of the token expired.
+		 */
+		DEADLINE_EXCEEDED("stopped at its deadline"),
+		/**
+		 * The thread running the analysis was interrupted.
+		 */
+		INTERRUPTED("interrupted");
+
+		private final String description;
+
+		private Reason(String description) {
+			this.description = description;
+		}
+	}
+
+	private final String task;
+	private final Reason reason;
+	private final transient Object partialResult;
+
+	/**
+	 * @param task          the name of the analysis
+	 * @param reason        the reason why the analysis was stopped
+	 * @param partialResult the result computed so far, or null
+	 */
+	public AnalysisCancelledException(String task, Reason reason, Object partialResult) {
+		super(task + " " + reason.description + ".");
+		this.task = task;
+		this.reason = reason;
+		this.partialResult = partialResult;
+	}
+
+	/**
+	 * @return the name of the analysis
+	 */
+	public String getTask() {
+		return task;
+	}
+
+	/**
+	 * @return the reason why the analysis was stopped
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+
+	/**
+	 * @return the result computed before the analysis was stopped, or null if
+	 *         the analysis does not provide one
+	 */
+	public Object getPartialResult() {
+		return partialResult;
+	}
+
+}
@@ -0,0 +1,122 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.progress;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.oristool.omnibus.progress.AnalysisCancelledException.Reason;
+
+/**
+ * It allows to stop analyses cooperatively: the analyses check the token at
+ * the boundaries of blocks of work, and throw an
+ * {@link AnalysisCancelledException} once it is cancelled, its deadline has
+ * expired or the thread checking it has been interrupted.
+ * <p>
+ * A token can be shared by many analyses, also running in different threads,
+ * to stop all of them at once.
+ */
+public final class CancellationToken {
+
+	private final boolean timed;
+	private final long deadline;
+	private volatile boolean cancelled;
+
+	/**
+	 * It builds a token without deadline, that stops the analyses only when
+	 * cancelled or interrupted.
+	 */
+	public CancellationToken() {
+		this.timed = false;
+		this.deadline = 0;
+	}
+
+	private CancellationToken(long deadline) {
+		this.timed = true;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * It builds a token whose deadline expires after the given time from now.
+	 *
+	 * @param timeout the time before the deadline
+	 * @param unit    the unit of the timeout
+	 * @return the token
+	 */
+	public static CancellationToken withTimeout(long timeout, TimeUnit unit) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout must be equal or greater than zero.");
+		return new CancellationToken(System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	/**
+	 * It cancels the analyses checking the token.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * It returns the reason why the analyses checking the token should stop,
+	 * considering the interruption status of the current thread.
+	 *
+	 * @return the reason, or null if the analyses can continue
+	 */
+	public Reason getReason() {
+		if (cancelled)
+			return Reason.CANCELLED;
+		if (timed && System.nanoTime() - deadline >= 0)
+			return Reason.DEADLINE_EXCEEDED;
+		if (Thread.currentThread().isInterrupted())
+			return Reason.INTERRUPTED;
+		return null;
+	}
+
+	/**
+	 * @return true if the analyses checking the token should stop
+	 */
+	public boolean isCancelled() {
+		return getReason() != null;
+	}
+
+	/**
+	 * It throws if the analyses checking the token should stop.
+	 *
+	 * @param task the name of the analysis
+	 * @throws AnalysisCancelledException if the analysis should stop
+	 */
+	public void check(String task) {
+		check(task, () -> null);
+	}
+
+	/**
+	 * It throws if the analyses checking the token should stop, with the partial
+	 * result of the analysis.
+	 *
+	 * @param task          the name of the analysis
+	 * @param partialResult the supplier of the result computed so far, called
+	 *                      only if the analysis should stop
+	 * @throws AnalysisCancelledException if the analysis should stop
+	 */
+	public void check(String task, Supplier<?> partialResult) {
+		Reason reason = getReason();
+		if (reason != null)
+			throw new AnalysisCancelledException(task, reason, partialResult.get());
+	}
+
+}
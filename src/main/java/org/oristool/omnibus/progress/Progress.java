@@ -0,0 +1,113 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.progress;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is an immutable snapshot of the progress of an analysis, measured in
+ * units of work (time steps, initial states, patterns) done out of a total.
+ */
+public final class Progress {
+
+	private final String task;
+	private final long done;
+	private final long total;
+	private final long elapsedNanos;
+
+	/**
+	 * @param task         the name of the analysis
+	 * @param done         the units of work done
+	 * @param total        the total units of work, or -1 if unknown
+	 * @param elapsedNanos the time since the start of the analysis, in
+	 *                     nanoseconds
+	 */
+	public Progress(String task, long done, long total, long elapsedNanos) {
+		this.task = task;
+		this.done = done;
+		this.total = total;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * @return the name of the analysis
+	 */
+	public String getTask() {
+		return task;
+	}
+
+	/**
+	 * @return the units of work done
+	 */
+	public long getDone() {
+		return done;
+	}
+
+	/**
+	 * @return the total units of work, or -1 if unknown
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return the time since the start of the analysis, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return the fraction of work done, or NaN if the total is unknown
+	 */
+	public double getFraction() {
+		return total < 0 ? Double.NaN : total == 0 ? 1. : (double) done / total;
+	}
+
+	/**
+	 * @return the units of work done per second
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0. : done * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * It returns the estimated time to completion, at the throughput so far.
+	 *
+	 * @return the remaining time in nanoseconds, or -1 if the total is unknown or
+	 *         no work was done yet
+	 */
+	public long getRemainingNanos() {
+		if (total < 0 || done == 0)
+			return -1;
+		return (long) ((double) (total - done) * elapsedNanos / done);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(task).append(": ").append(done);
+		if (total >= 0)
+			sb.append('/').append(total).append(String.format(" (%.1f%%)", 100 * getFraction()));
+		sb.append(String.format(", %.2f/s", getThroughput()));
+		long remaining = getRemainingNanos();
+		if (remaining >= 0)
+			sb.append(", ETA ").append(TimeUnit.NANOSECONDS.toSeconds(remaining)).append(" s");
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,37 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.progress;
+
+/**
+ * This is the interface of the listeners of the progress of long analyses.
+ * Analyses call it at coarse intervals, from the thread doing the work, and
+ * stop with an {@link AnalysisCancelledException} as soon as it
+ * returns false.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+	/**
+	 * It receives the progress of an analysis.
+	 *
+	 * @param progress the progress so far
+	 * @return true to continue the analysis, false to cancel it
+	 */
+	boolean onProgress(Progress progress);
+
+}
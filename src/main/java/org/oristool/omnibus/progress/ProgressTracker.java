@@ -0,0 +1,149 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.progress;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.oristool.omnibus.progress.AnalysisCancelledException.Reason;
+
+/**
+ * It tracks the progress of an analysis and reports it to a
+ * {@link ProgressListener} at most once per interval. Without a listener it
+ * does nothing, not even reading the clock.
+ * <p>
+ * It is thread-safe: the workers of a parallel analysis can advance the same
+ * tracker, and the one crossing the interval reports for all of them. Once the
+ * listener cancels the analysis, every further update throws a
+ * {@link AnalysisCancelledException}, so that all the workers stop.
+ */
+public final class ProgressTracker {
+
+	/**
+	 * The default minimum interval between two reports, in milliseconds.
+	 */
+	public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+	private final ProgressListener listener;
+	private final String task;
+	private final long total;
+	private final long intervalNanos;
+	private final long start;
+	private final AtomicLong done = new AtomicLong();
+	private final AtomicLong nextReport;
+	private volatile boolean cancelled;
+
+	/**
+	 * It builds a tracker with the default interval.
+	 *
+	 * @param listener the listener, or null
+	 * @param task     the name of the analysis
+	 * @param total    the total units of work, or -1 if unknown
+	 */
+	public ProgressTracker(ProgressListener listener, String task, long total) {
+		this(listener, task, total, DEFAULT_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * @param listener       the listener, or null
+	 * @param task           the name of the analysis
+	 * @param total          the total units of work, or -1 if unknown
+	 * @param intervalMillis the minimum interval between two reports, in
+	 *                       milliseconds
+	 */
+	public ProgressTracker(ProgressListener listener, String task, long total, long intervalMillis) {
+		if (intervalMillis < 0)
+			throw new IllegalArgumentException("intervalMillis must be equal or greater than zero.");
+		this.listener = listener;
+		this.task = task;
+		this.total = total;
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+		this.start = listener == null ? 0 : System.nanoTime();
+		this.nextReport = new AtomicLong(start + intervalNanos);
+	}
+
+	/**
+	 * It adds units of work done, and reports the progress if the interval has
+	 * elapsed since the last report.
+	 *
+	 * @param units the units of work done since the last update
+	 * @throws AnalysisCancelledException if the listener cancelled the analysis
+	 */
+	public void advance(long units) {
+		if (listener == null)
+			return;
+		report(done.addAndGet(units));
+	}
+
+	/**
+	 * It sets the units of work done, and reports the progress if the interval
+	 * has elapsed since the last report.
+	 *
+	 * @param units the units of work done since the start
+	 * @throws AnalysisCancelledException if the listener cancelled the analysis
+	 */
+	public void update(long units) {
+		if (listener == null)
+			return;
+		done.accumulateAndGet(units, Math::max);
+		report(done.get());
+	}
+
+	/**
+	 * It reports the final progress, regardless of the interval. The analysis is
+	 * complete, so the listener cannot cancel it any more.
+	 */
+	public void finish() {
+		if (listener == null || cancelled)
+			return;
+		listener.onProgress(new Progress(task, done.get(), total, System.nanoTime() - start));
+	}
+
+	/**
+	 * @return true if the listener cancelled the analysis
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * It throws if the listener cancelled the analysis. Executors such as
+	 * {@link java.util.concurrent.ForkJoinPool} replace the exception thrown by
+	 * a worker with a new one, so callers use this method to rethrow the
+	 * original message.
+	 *
+	 * @throws AnalysisCancelledException if the listener cancelled the analysis
+	 */
+	public void checkCancelled() {
+		if (cancelled)
+			throw new AnalysisCancelledException(task, Reason.CANCELLED, null);
+	}
+
+	private void report(long units) {
+		checkCancelled();
+		long now = System.nanoTime();
+		long next = nextReport.get();
+		if (now - next < 0 || !nextReport.compareAndSet(next, now + intervalNanos))
+			return;
+		if (!listener.onProgress(new Progress(task, units, total, now - start))) {
+			cancelled = true;
+			throw new AnalysisCancelledException(task, Reason.CANCELLED, null);
+		}
+	}
+
+}
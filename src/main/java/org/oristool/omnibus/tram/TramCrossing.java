@@ -18,11 +18,13 @@
 package org.oristool.omnibus.tram;
 
 import org.oristool.omnibus.intersection.Obstacle;
+import org.oristool.omnibus.metrics.AnalysisCounter;
+import org.oristool.omnibus.metrics.Metrics;
 import org.oristool.omnibus.tram.analysis.GreenProbabilityVisitor;
+import org.oristool.omnibus.utils.MathUtils;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.Arrays;
 
 /**
  * The crossing of the tram over the crossroad is intended to be an obstacle for
@@ -31,9 +33,17 @@ import java.util.Arrays;
 public class TramCrossing extends Obstacle {
 
 	private TramWay tramWay;
+	private double[] transientAvailability;
 	private double[] periodicAvailability;
 	private boolean analyzed;
 
+	// results of the last analysis at a fine time step, with the modification
+	// stamp of the tramway they were computed for
+	private BigDecimal fineTimeStep;
+	private long fineModificationStamp;
+	private double[] fineTransientAvailability;
+	private double[] finePeriodicAvailability;
+
 	/**
 	 * A TramCrossing, of course, has a tramWay. This is the only parameter of the
 	 * constructor.
@@ -50,6 +60,10 @@ public class TramCrossing extends Obstacle {
 	/**
 	 * This launch the analysis of the tramway to get the availability of the
 	 * obstacle.
+	 * <p>
+	 * The analysis is always run again, and the results kept by
+	 * {@link #analyze(GreenProbabilityVisitor, BigDecimal, BigDecimal)} are
+	 * discarded.
 	 * 
 	 * @param tramWayVisitor the green probability visitor we want to use for the
 	 *                       analysis
@@ -57,37 +71,130 @@ public class TramCrossing extends Obstacle {
 	 *                       analysis
 	 */
 	public void analyze(GreenProbabilityVisitor tramWayVisitor, BigDecimal timeStep) {
-		this.availability = tramWayVisitor.computeGreenProbability(tramWay, timeStep).getResult();
-		this.periodicAvailability = tramWayVisitor.getPeriodicResult();
+		setFineResults(null, null, null, 0);
+		computeAvailability(tramWayVisitor, timeStep);
 		this.analyzed = true;
 	}
 
+	/**
+	 * This launch the analysis of the tramway at a fine time step, unless already
+	 * done at the same fine time step since the last change of the tramway, and
+	 * serves the availability at the given coarser time step by averaging over its
+	 * intervals. Calls with other multiples of the same fine time step will reuse
+	 * the same analysis; if the analyzed time bound or period do not split into a
+	 * whole number of intervals, the tramway is analyzed at the given time step.
+	 * 
+	 * @param tramWayVisitor the green probability visitor we want to use for the
+	 *                       analysis
+	 * @param timeStep       the temporal resolution of the availability
+	 * @param fineTimeStep   the temporal resolution of the analysis, timeStep must
+	 *                       be one of its multiples
+	 */
+	public void analyze(GreenProbabilityVisitor tramWayVisitor, BigDecimal timeStep, BigDecimal fineTimeStep) {
+		if (timeStep.compareTo(fineTimeStep) < 0 || timeStep.remainder(fineTimeStep).signum() != 0)
+			throw new IllegalArgumentException("timeStep must be a multiple of fineTimeStep.");
+		long stamp = tramWay.getModificationStamp();
+		if (this.fineTimeStep == null || this.fineTimeStep.compareTo(fineTimeStep) != 0
+				|| this.fineModificationStamp != stamp) {
+			computeAvailability(tramWayVisitor, fineTimeStep);
+			setFineResults(fineTimeStep, transientAvailability, periodicAvailability, stamp);
+		}
+		if (!resampleFineResults(timeStep))
+			computeAvailability(tramWayVisitor, timeStep);
+		this.analyzed = true;
+	}
+
+	private void computeAvailability(GreenProbabilityVisitor tramWayVisitor, BigDecimal timeStep) {
+		this.transientAvailability = tramWayVisitor.computeGreenProbability(tramWay, timeStep).getResult();
+		this.periodicAvailability = tramWayVisitor.getPeriodicResult();
+	}
+
+	/*
+	 * It resamples the fine results to the given time step, a multiple of the fine
+	 * one, if both the transient and periodic parts split into a whole number of
+	 * its intervals.
+	 */
+	private boolean resampleFineResults(BigDecimal timeStep) {
+		int ratio = timeStep.divide(fineTimeStep).intValueExact();
+		if (ratio == 1) {
+			setAvailability(fineTransientAvailability, finePeriodicAvailability);
+			return true;
+		}
+		if (fineTransientAvailability.length % ratio != 0 || finePeriodicAvailability.length % ratio != 0)
+			return false;
+
+		this.transientAvailability = MathUtils.averageOverIntervals(fineTransientAvailability, ratio);
+		this.periodicAvailability = MathUtils.averageOverIntervals(finePeriodicAvailability, ratio);
+		Metrics.getRegistry().increment(AnalysisCounter.TRAM_RESAMPLES, 1);
+		return true;
+	}
+
 	private void setAnalyzed(boolean analyzed) {
 		this.analyzed = analyzed;
 	}
 
-	private void setPeriodicAvailability(double[] periodicAvailability) {
-		this.periodicAvailability = periodicAvailability.clone();
+	private void setAvailability(double[] transientAvailability,
+			double[] periodicAvailability) {
+		// the availability arrays are never modified, so they can be shared
+		this.transientAvailability = transientAvailability;
+		this.periodicAvailability = periodicAvailability;
+	}
+
+	private void setFineResults(BigDecimal fineTimeStep, double[] fineTransientAvailability,
+			double[] finePeriodicAvailability, long fineModificationStamp) {
+		this.fineTimeStep = fineTimeStep;
+		this.fineModificationStamp = fineModificationStamp;
+		this.fineTransientAvailability = fineTransientAvailability;
+		this.finePeriodicAvailability = finePeriodicAvailability;
 	}
 
 	@Override
 	public Obstacle getClone() {
 		TramCrossing clone = new TramCrossing(this.tramWay);
-		clone.setAvailability(this.availability);
 		clone.setAnalyzed(this.analyzed);
-		clone.setPeriodicAvailability(this.periodicAvailability);
+		clone.setAvailability(this.transientAvailability, this.periodicAvailability);
+		clone.setFineResults(this.fineTimeStep, this.fineTransientAvailability, this.finePeriodicAvailability,
+				this.fineModificationStamp);
 		return clone;
 	}
 
 	@Override
 	public double getAvailability(int timeStep) {
+		checkAnalyzed();
+		if (timeStep < 0)
+			throw new IllegalArgumentException("Negative timeStep requested.");
+		if (timeStep < this.transientAvailability.length)
+			return this.transientAvailability[timeStep];
+		else
+			return this.periodicAvailability[(timeStep - this.transientAvailability.length)
+					% periodicAvailability.length];
+	}
+
+	@Override
+	public void copyInto(double[] dst, int offset, int len) {
+		checkAnalyzed();
+		if (offset < 0)
+			throw new IllegalArgumentException("Negative timeStep requested.");
+		int transientLen = Math.max(0, Math.min(len, this.transientAvailability.length - offset));
+		if (transientLen > 0)
+			System.arraycopy(this.transientAvailability, offset, dst, 0, transientLen);
+
+		// one array copy per period
+		int periodicLen = this.periodicAvailability.length;
+		int dstPos = transientLen;
+		int from = (offset + transientLen - this.transientAvailability.length) % periodicLen;
+		while (dstPos < len) {
+			int chunk = Math.min(len - dstPos, periodicLen - from);
+			System.arraycopy(this.periodicAvailability, from, dst, dstPos, chunk);
+			dstPos += chunk;
+			from = 0;
+		}
+	}
+
+	private void checkAnalyzed() {
 		if (!analyzed) {
 			throw new IllegalAccessError("TramCrossing not yet analyzed. Please, invoke analyze() first.");
 		}
-		if (timeStep < this.availability.length)
-			return super.getAvailabilityStandard(timeStep);
-		else
-			return this.periodicAvailability[(timeStep - this.availability.length) % periodicAvailability.length];
 	}
 
 	@Override
@@ -97,8 +204,8 @@ public class TramCrossing extends Obstacle {
 
 	@Override
 	public String toString() {
-		return "TramCrossing [tramWay=" + tramWay + ", periodicAvailability=" + Arrays.toString(periodicAvailability)
-				+ ", analyzed=" + analyzed + ", availability=" + Arrays.toString(availability) + "]";
+		return "TramCrossing [tramWay=" + tramWay + ", periodicAvailability=" + periodicAvailability
+				+ ", analyzed=" + analyzed + ", availability=" + transientAvailability + "]";
 	}
 
 }
@@ -54,6 +54,7 @@ public class TramLine extends TramWay {
 	 */
 	public void addTramTrack(TramTrack... tramTracks) {
 		Arrays.asList(tramTracks).forEach(this.tramTracks::add);
+		markModified();
 	}
 
 	/**
@@ -63,6 +64,7 @@ public class TramLine extends TramWay {
 	 */
 	public void removeTramTrack(TramTrack tramTrack) {
 		this.tramTracks.remove(tramTrack);
+		markModified();
 	}
 
 	@Override
@@ -70,6 +72,15 @@ public class TramLine extends TramWay {
 		tramWayVisitor.visit(this);
 	}
 
+	@Override
+	public long getModificationStamp() {
+		long stamp = super.getModificationStamp();
+		for (TramTrack tt : tramTracks) {
+			stamp = Math.max(stamp, tt.getModificationStamp());
+		}
+		return stamp;
+	}
+
 	@Override
 	public BigInteger getSuggestedTimeBound() {
 		return this.getHyperPeriod().add(this.getMaxPhaseTime());
@@ -18,6 +18,7 @@
 package org.oristool.omnibus.tram;
 
 import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.oristool.omnibus.tram.analysis.TramWayVisitor;
 
@@ -27,7 +28,12 @@ import org.oristool.omnibus.tram.analysis.TramWayVisitor;
  */
 public abstract class TramWay {
 
+	// stamps are drawn from a global counter, so that any change makes the stamp
+	// of every way containing the changed one greater than all the previous ones
+	private static final AtomicLong STAMPS = new AtomicLong();
+
 	private String name;
+	private volatile long modificationStamp = STAMPS.incrementAndGet();
 
 	/**
 	 * The constructor.
@@ -47,6 +53,25 @@ public abstract class TramWay {
 		return name;
 	}
 
+	/**
+	 * API internal utils. This returns a stamp that grows whenever a parameter of
+	 * the tramway, or of one of its parts, changes: results computed for a stamp
+	 * are stale once the stamp differs.
+	 * 
+	 * @return the modification stamp
+	 */
+	public long getModificationStamp() {
+		return modificationStamp;
+	}
+
+	/**
+	 * API internal utils. It must be called whenever a parameter of the tramway
+	 * changes, to update its modification stamp.
+	 */
+	protected void markModified() {
+		this.modificationStamp = STAMPS.incrementAndGet();
+	}
+
 	protected String wrap(String string) {
 		return new String(name + "_" + string);
 	}
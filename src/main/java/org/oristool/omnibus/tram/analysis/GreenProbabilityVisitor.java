@@ -20,6 +20,8 @@ package org.oristool.omnibus.tram.analysis;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
+import org.oristool.omnibus.progress.AnalysisCancelledException;
+import org.oristool.omnibus.progress.CancellationToken;
 import org.oristool.omnibus.tram.TramWay;
 
 /**
@@ -30,12 +32,26 @@ public abstract class GreenProbabilityVisitor implements TramWayVisitor {
 
 	protected BigInteger timeBound;
 	protected BigInteger hyperPeriod;
+	protected CancellationToken cancellationToken;
 
 	protected GreenProbabilityVisitor() {
 		timeBound = new BigInteger("0");
 		hyperPeriod = new BigInteger("0");
 	}
 
+	/**
+	 * This sets the token checked by the next analyses for each track. Once the
+	 * token is cancelled, the analysis of the running track is interrupted and an
+	 * {@link AnalysisCancelledException} is thrown, without partial result.
+	 * 
+	 * @param cancellationToken the token, or null
+	 * @return the visitor itself
+	 */
+	public GreenProbabilityVisitor setCancellationToken(CancellationToken cancellationToken) {
+		this.cancellationToken = cancellationToken;
+		return this;
+	}
+
 	/**
 	 * This method compute the probabilities with which TramWays let the
 	 * intersection free until the suggested time bound given by tramway itself.
@@ -17,20 +17,34 @@
 
 package org.oristool.omnibus.tram.analysis;
 
+import org.oristool.analyzer.log.AnalysisMonitor;
 import org.oristool.models.stpn.RewardRate;
 import org.oristool.models.stpn.TransientSolution;
 import org.oristool.models.stpn.trans.TreeTransient;
+import org.oristool.omnibus.metrics.AnalysisCounter;
+import org.oristool.omnibus.metrics.AnalysisStage;
+import org.oristool.omnibus.metrics.Metrics;
+import org.oristool.omnibus.metrics.MetricsRegistry;
+import org.oristool.omnibus.progress.CancellationToken;
 import org.oristool.omnibus.tram.TramLine;
+import org.oristool.omnibus.tram.TramTrack;
 import org.oristool.omnibus.tram.TramWay;
 import org.oristool.omnibus.tram.pn.PetriNetTramTrack;
+import org.oristool.omnibus.utils.MathUtils;
 import org.oristool.petrinet.Marking;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This implements the parallel count of the availability of the intersection.
  * This analyze single tracks separately and combine rewards by multiplication.
+ * Tracks that only differ in their phase are analyzed once, and their green
+ * probabilities are derived by shifting the result in time.
  */
 public class ParallelGreenProbabilityVisitor extends GreenProbabilityVisitor {
 
@@ -39,8 +53,16 @@ public class ParallelGreenProbabilityVisitor extends GreenProbabilityVisitor {
 	private double[] result;
 	private double[] periodicResult;
 
+	// green probabilities of zero phase tracks, shared with child visitors
+	private final Map<List<Object>, double[]> zeroPhaseSolutions;
+
 	public ParallelGreenProbabilityVisitor() {
+		this(new HashMap<>());
+	}
+
+	private ParallelGreenProbabilityVisitor(Map<List<Object>, double[]> zeroPhaseSolutions) {
 		super();
+		this.zeroPhaseSolutions = zeroPhaseSolutions;
 	}
 
 	@Override
@@ -52,20 +74,14 @@ public class ParallelGreenProbabilityVisitor extends GreenProbabilityVisitor {
 		int step = (int) (timeBound.doubleValue() / timeStep.doubleValue());
 		result = new double[step];
 
-		double[][] childResults = new double[tramLine.getTramTracks().size()][step];
-		for (int i = 0; i < tramLine.getTramTracks().size(); i++) {
-			ParallelGreenProbabilityVisitor childVisitor = new ParallelGreenProbabilityVisitor();
-			double[] childResult = childVisitor
-					.computeGreenProbability(tramLine.getTramTracks().get(i), timeBound, timeStep).getResult();
-			for (int j = 0; j < childResult.length; j++)
-				childResults[i][j] = childResult[j];
-		}
-
-		for (int i = 0; i < step; i++) {
-			result[i] = 1.;
-			for (int j = 0; j < tramLine.getTramTracks().size(); j++) {
-				result[i] = result[i] * childResults[j][i];
-			}
+		Arrays.fill(result, 1.);
+		for (TramTrack tramTrack : tramLine.getTramTracks()) {
+			ParallelGreenProbabilityVisitor childVisitor = new ParallelGreenProbabilityVisitor(zeroPhaseSolutions);
+			childVisitor.setCancellationToken(cancellationToken);
+			double[] childResult = childVisitor.computeGreenProbability(tramTrack, timeBound, timeStep).getResult();
+			int len = Math.min(step, childResult.length);
+			MathUtils.multiplyInto(result, childResult, len);
+			Arrays.fill(result, len, step, 0.);
 		}
 
 		int periodicStep = (int) ((tramLine.getHyperPeriod().doubleValue() / timeStep.doubleValue()));
@@ -84,27 +100,19 @@ public class ParallelGreenProbabilityVisitor extends GreenProbabilityVisitor {
 				: timeBound;
 		hyperPeriod = petriNetTramWay.getHyperPeriod();
 
-		petriNetTramWay.buildModel();
-
-		TreeTransient analysis;
-		TransientSolution<Marking, Marking> solution;
-		TransientSolution<Marking, RewardRate> reward;
-
 		BigInteger analysisTimeBound = petriNetTramWay.getSuggestedTimeBound();
-		BigDecimal bd_analysisTimeBound = new BigDecimal(analysisTimeBound);
-		analysis = TreeTransient.builder().greedyPolicy(bd_analysisTimeBound, BigDecimal.ZERO)
-				.timeBound(bd_analysisTimeBound).timeStep(timeStep).build();
-
-		solution = analysis.compute(petriNetTramWay.getPetriNet(), petriNetTramWay.getMarking());
-		reward = TransientSolution.computeRewards(false, solution, petriNetTramWay.getGreenReward());
 
 		int step = (int) (timeBound.doubleValue() / timeStep.doubleValue());
 
 		int solutionStep = (int) ((analysisTimeBound.doubleValue()) / timeStep.doubleValue());
 
+		double[] solution = getShiftedSolution(petriNetTramWay, solutionStep);
+		if (solution == null)
+			solution = computeSolution(petriNetTramWay, analysisTimeBound);
+
 		this.result = new double[step];
 		for (int i = 0; i < solutionStep; i++) {
-			result[i] = reward.getSolution()[i][0][0];
+			result[i] = solution[i];
 		}
 
 		int periodicStep = (int) ((petriNetTramWay.getHyperPeriod().doubleValue() / timeStep.doubleValue()));
@@ -120,6 +128,78 @@ public class ParallelGreenProbabilityVisitor extends GreenProbabilityVisitor {
 
 	}
 
+	/*
+	 * It derives the green probability of a track from the one of its zero phase
+	 * copy, shared by all the tracks with the same phase invariant key. Before the
+	 * phase no tram has departed, so the intersection is free. It returns null if
+	 * the track cannot be shifted or its phase is not a multiple of the time step.
+	 */
+	private double[] getShiftedSolution(PetriNetTramTrack petriNetTramWay, int solutionStep) {
+		Object key = petriNetTramWay.getPhaseInvariantKey();
+		if (key == null || !isMultipleOfTimeStep(petriNetTramWay.getMaxPhaseTime())
+				|| !isMultipleOfTimeStep(petriNetTramWay.getHyperPeriod()))
+			return null;
+
+		List<Object> solutionKey = Arrays.asList(key, timeStep.stripTrailingZeros());
+		double[] zeroPhaseSolution = zeroPhaseSolutions.get(solutionKey);
+		if (zeroPhaseSolution == null) {
+			PetriNetTramTrack zeroPhaseTrack = petriNetTramWay.getZeroPhaseTrack();
+			if (zeroPhaseTrack == null)
+				return null;
+			zeroPhaseSolution = computeSolution(zeroPhaseTrack, petriNetTramWay.getHyperPeriod());
+			zeroPhaseSolutions.put(solutionKey, zeroPhaseSolution);
+		} else {
+			Metrics.getRegistry().increment(AnalysisCounter.TRAM_SHIFT_REUSES, 1);
+		}
+
+		int phaseStep = new BigDecimal(petriNetTramWay.getMaxPhaseTime()).divide(timeStep).intValue();
+		double[] solution = new double[solutionStep];
+		Arrays.fill(solution, 0, Math.min(phaseStep, solutionStep), 1.);
+		for (int i = phaseStep; i < solutionStep; i++) {
+			solution[i] = zeroPhaseSolution[(i - phaseStep) % zeroPhaseSolution.length];
+		}
+		return solution;
+	}
+
+	private boolean isMultipleOfTimeStep(BigInteger time) {
+		return new BigDecimal(time).remainder(timeStep).signum() == 0;
+	}
+
+	private double[] computeSolution(PetriNetTramTrack petriNetTramWay, BigInteger analysisTimeBound) {
+		PetriNetTramTrack.Model model = petriNetTramWay.buildModel();
+		MetricsRegistry metrics = Metrics.getRegistry();
+		long start = metrics.startTimer();
+
+		TreeTransient analysis;
+		TransientSolution<Marking, Marking> solution;
+		TransientSolution<Marking, RewardRate> reward;
+
+		BigDecimal bd_analysisTimeBound = new BigDecimal(analysisTimeBound);
+		TreeTransient.Builder builder = TreeTransient.builder().greedyPolicy(bd_analysisTimeBound, BigDecimal.ZERO)
+				.timeBound(bd_analysisTimeBound).timeStep(timeStep);
+		if (cancellationToken != null) {
+			cancellationToken.check("Tram Petri net analysis");
+			builder.monitor(new CancellationMonitor(cancellationToken));
+		}
+		analysis = builder.build();
+
+		solution = analysis.compute(model.getPetriNet(), model.getMarking());
+		// the enumeration stopped by the monitor leaves an incomplete solution
+		if (cancellationToken != null)
+			cancellationToken.check("Tram Petri net analysis");
+		reward = TransientSolution.computeRewards(false, solution, model.getGreenRewardRate());
+
+		int solutionStep = (int) ((analysisTimeBound.doubleValue()) / timeStep.doubleValue());
+
+		double[] samples = new double[solutionStep];
+		for (int i = 0; i < solutionStep; i++) {
+			samples[i] = reward.getSolution()[i][0][0];
+		}
+		metrics.stopTimer(AnalysisStage.TRAM_PETRI_NET, start);
+		metrics.increment(AnalysisCounter.TRAM_PETRI_NET_ANALYSES, 1);
+		return samples;
+	}
+
 	@Override
 	public GreenProbabilityVisitor computeGreenProbability(TramWay tramWay, BigDecimal timeStep) {
 		reset();
@@ -148,4 +228,26 @@ public class ParallelGreenProbabilityVisitor extends GreenProbabilityVisitor {
 		return periodicResult;
 	}
 
+	/*
+	 * It asks the enumeration of the transient tree to stop once the token is
+	 * cancelled.
+	 */
+	private static class CancellationMonitor implements AnalysisMonitor {
+
+		private final CancellationToken cancellationToken;
+
+		private CancellationMonitor(CancellationToken cancellationToken) {
+			this.cancellationToken = cancellationToken;
+		}
+
+		@Override
+		public void notifyMessage(String message) {
+		}
+
+		@Override
+		public boolean interruptRequested() {
+			return cancellationToken.isCancelled();
+		}
+	}
+
 }
@@ -28,6 +28,7 @@ import org.oristool.petrinet.Transition;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
 
 /**
  * This is a single tram track modelled by a Petri Net, with some specific
@@ -45,6 +46,8 @@ public class BasicPetriNetTramTrack extends PetriNetTramTrack {
 
 	private String greenReward = "1-" + wrap("setRed");
 
+	private PetriNetTramTrack zeroPhaseTrack;
+
 	protected BasicPetriNetTramTrack(String name) {
 		super(name);
 	}
@@ -93,17 +96,17 @@ public class BasicPetriNetTramTrack extends PetriNetTramTrack {
 		marking.setTokens(sensor, 0);
 		marking.setTokens(setRed, 0);
 		crossLigthAnt.addFeature(StochasticTransitionFeature
-				.newDeterministicInstance(new BigDecimal(crosslightAntTime.doubleValue()), MarkingExpr.from("1", net)));
+				.newDeterministicInstance(new BigDecimal(crosslightAntTime.doubleValue()), MarkingExpr.ONE));
 		crossLigthAnt.addFeature(new Priority(0));
 		delay.addFeature(StochasticTransitionFeature.newUniformInstance(new BigDecimal(delayEFTime.doubleValue()),
 				new BigDecimal(delayLFTime.doubleValue())));
 		phase.addFeature(StochasticTransitionFeature.newDeterministicInstance(new BigDecimal(phaseTime.doubleValue()),
-				MarkingExpr.from("1", net)));
+				MarkingExpr.ONE));
 		phase.addFeature(new Priority(0));
 		leaving.addFeature(StochasticTransitionFeature.newUniformInstance(new BigDecimal(leavingEFTime.doubleValue()),
 				new BigDecimal(leavingLFTime.doubleValue())));
 		period.addFeature(StochasticTransitionFeature.newDeterministicInstance(new BigDecimal(periodTime.doubleValue()),
-				MarkingExpr.from("1", net)));
+				MarkingExpr.ONE));
 		period.addFeature(new Priority(0));
 
 	}
@@ -114,9 +117,10 @@ public class BasicPetriNetTramTrack extends PetriNetTramTrack {
 	}
 
 	protected void setPeriodTime(BigInteger periodTime) {
-		if (isPositive(periodTime))
+		if (isPositive(periodTime)) {
 			this.periodTime = periodTime;
-		else
+			invalidateModel();
+		} else
 			throw new IllegalArgumentException("PeriodTime must be equal or greater than zero.");
 	}
 
@@ -124,15 +128,17 @@ public class BasicPetriNetTramTrack extends PetriNetTramTrack {
 		if (isPositive(delayEFTTime) && isPositive(delayLFTTime)) {
 			this.delayEFTime = delayEFTTime;
 			this.delayLFTime = delayLFTTime;
+			invalidateModel();
 		} else
 			throw new IllegalArgumentException(
 					"DelayEFTTime and delayLFTTTime must be both equal or greater then zero.");
 	}
 
 	protected void setCrosslightAntTime(BigInteger crosslightAntTime) {
-		if (isPositive(crosslightAntTime))
+		if (isPositive(crosslightAntTime)) {
 			this.crosslightAntTime = crosslightAntTime;
-		else
+			invalidateModel();
+		} else
 			throw new IllegalArgumentException("CrosslightAntTime must be equal or greater than zero.");
 	}
 
@@ -140,15 +146,17 @@ public class BasicPetriNetTramTrack extends PetriNetTramTrack {
 		if (isPositive(leavingEFTTime) && isPositive(leavingLFTTime)) {
 			this.leavingEFTime = leavingEFTTime;
 			this.leavingLFTime = leavingLFTTime;
+			invalidateModel();
 		} else
 			throw new IllegalArgumentException(
 					"LeavingEFTTime and leavingLFTTime must be both equal or greater then zero.");
 	}
 
 	protected void setPhaseTime(BigInteger phaseTime) {
-		if (isPositive(phaseTime))
+		if (isPositive(phaseTime)) {
 			this.phaseTime = phaseTime;
-		else
+			invalidateModel();
+		} else
 			throw new IllegalArgumentException("PhaseTime must be equal or greater than zero.");
 	}
 
@@ -176,6 +184,32 @@ public class BasicPetriNetTramTrack extends PetriNetTramTrack {
 					+ ". For analysis reasons, PeriodTime must be greather than summation of DelayLFT, CrosslightAntTime and LeavingLFT.");
 	}
 
+	@Override
+	public Object getPhaseInvariantKey() {
+		// trams depart at phaseTime + k * periodTime and checkLegality() ensures that
+		// each one leaves the crossing before the next departs, so the phase only
+		// shifts the green probability curve
+		return Arrays.asList(getClass(), periodTime, delayEFTime, delayLFTime, crosslightAntTime, leavingEFTime,
+				leavingLFTime);
+	}
+
+	@Override
+	public synchronized PetriNetTramTrack getZeroPhaseTrack() {
+		if (phaseTime.signum() == 0)
+			return this;
+		// kept, so that its model is built once like the one of this track
+		if (zeroPhaseTrack == null)
+			zeroPhaseTrack = new BasicPetriNetTramTrack(getName(), periodTime, BigInteger.ZERO, delayEFTime,
+					delayLFTime, crosslightAntTime, leavingEFTime, leavingLFTime);
+		return zeroPhaseTrack;
+	}
+
+	@Override
+	protected synchronized void invalidateModel() {
+		super.invalidateModel();
+		this.zeroPhaseTrack = null;
+	}
+
 	@Override
 	public BigInteger getMaxPhaseTime() {
 		return phaseTime;
@@ -17,6 +17,7 @@
 
 package org.oristool.omnibus.tram.pn;
 
+import org.oristool.models.stpn.RewardRate;
 import org.oristool.omnibus.tram.TramTrack;
 import org.oristool.petrinet.Marking;
 import org.oristool.petrinet.PetriNet;
@@ -26,8 +27,7 @@ import org.oristool.petrinet.PetriNet;
  */
 public abstract class PetriNetTramTrack extends TramTrack {
 
-	protected PetriNet petriNet;
-	protected Marking marking;
+	private Model model;
 
 	public PetriNetTramTrack(String name) {
 		super(name);
@@ -35,12 +35,31 @@ public abstract class PetriNetTramTrack extends TramTrack {
 
 	/**
 	 * API internal utils. This methods build the model as a new Petri net, ready to
-	 * be analyzed.
+	 * be analyzed. The model is built only once and reused by the following
+	 * analyses, until a parameter of the track changes: the returned net and
+	 * marking must not be modified. The returned model is not affected by later
+	 * changes of the track, so an analysis should use it throughout.
+	 * 
+	 * @return the built model
+	 */
+	public synchronized Model buildModel() {
+		if (this.model == null) {
+			PetriNet net = new PetriNet();
+			Marking initialMarking = new Marking();
+			this.buildModel(net, initialMarking);
+			this.model = new Model(net, initialMarking, RewardRate.fromString(getGreenReward()));
+		}
+		return this.model;
+	}
+
+	/**
+	 * API internal utils. This discards the built model, so that the next call to
+	 * {@link #buildModel()} builds it again. It must be called whenever a
+	 * parameter of the track changes, and it updates its modification stamp.
 	 */
-	public void buildModel() {
-		this.petriNet = new PetriNet();
-		this.marking = new Marking();
-		this.buildModel(this.getPetriNet(), this.getMarking());
+	protected synchronized void invalidateModel() {
+		this.model = null;
+		markModified();
 	}
 
 	/**
@@ -62,21 +81,86 @@ public abstract class PetriNetTramTrack extends TramTrack {
 	protected abstract void checkLegality();
 
 	/**
-	 * API internal utils. This returns the Petri Net object.
+	 * API internal utils. Tracks whose green probability, from their phase on, is
+	 * the same curve shifted in time return equal keys, so that the curve can be
+	 * computed once and reused. The default implementation returns null, meaning
+	 * that the track must always be analyzed on its own.
+	 * 
+	 * @return a key equal for tracks that only differ in their phase, or null
+	 */
+	public Object getPhaseInvariantKey() {
+		return null;
+	}
+
+	/**
+	 * API internal utils. This returns a copy of the track with null phase, whose
+	 * green probability shifted by the phase is the one of this track. The
+	 * default implementation returns null, as {@link #getPhaseInvariantKey()}:
+	 * only tracks with a non-null phase invariant key can be shifted in time.
+	 * 
+	 * @return a copy of the track with null phase, or null
+	 */
+	public PetriNetTramTrack getZeroPhaseTrack() {
+		return null;
+	}
+
+	/**
+	 * API internal utils. This returns the Petri Net object of the last built
+	 * model.
 	 * 
-	 * @return the Petri Net
+	 * @return the Petri Net, or null if the model is not built
 	 */
-	public PetriNet getPetriNet() {
-		return petriNet;
+	public synchronized PetriNet getPetriNet() {
+		return model != null ? model.getPetriNet() : null;
 	}
 
 	/**
-	 * API internal utils. This returns the Marking object for the Petri net.
+	 * API internal utils. This returns the Marking object for the Petri net of
+	 * the last built model.
 	 * 
-	 * @return the Marking
+	 * @return the Marking, or null if the model is not built
+	 */
+	public synchronized Marking getMarking() {
+		return model != null ? model.getMarking() : null;
+	}
+
+	/**
+	 * API internal utils. The model of a track, as built by
+	 * {@link PetriNetTramTrack#buildModel()}: the net, its initial marking and
+	 * the parsed green reward.
 	 */
-	public Marking getMarking() {
-		return marking;
+	public static final class Model {
+
+		private final PetriNet petriNet;
+		private final Marking marking;
+		private final RewardRate greenRewardRate;
+
+		private Model(PetriNet petriNet, Marking marking, RewardRate greenRewardRate) {
+			this.petriNet = petriNet;
+			this.marking = marking;
+			this.greenRewardRate = greenRewardRate;
+		}
+
+		/**
+		 * @return the Petri Net, that must not be modified
+		 */
+		public PetriNet getPetriNet() {
+			return petriNet;
+		}
+
+		/**
+		 * @return the initial marking, that must not be modified
+		 */
+		public Marking getMarking() {
+			return marking;
+		}
+
+		/**
+		 * @return the green reward rate
+		 */
+		public RewardRate getGreenRewardRate() {
+			return greenRewardRate;
+		}
 	}
 
 }
\ No newline at end of file
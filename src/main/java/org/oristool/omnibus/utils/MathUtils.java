@@ -97,6 +97,50 @@ public class MathUtils {
 		return rmsd;
 	}
 
+	/**
+	 * It multiplies, element by element, the first {@code len} elements of
+	 * {@code acc} by those of {@code factor}, storing the products in {@code acc}.
+	 * The loop is kept free of branches and calls so that the JIT compiler can
+	 * vectorize it.
+	 *
+	 * @param acc    the array of partial products, updated in place
+	 * @param factor the array of factors
+	 * @param len    the number of elements to multiply
+	 */
+	public static void multiplyInto(double[] acc, double[] factor, int len) {
+		if (len > acc.length || len > factor.length) {
+			throw new IllegalArgumentException("len exceeds the arrays lengths.");
+		}
+		for (int i = 0; i < len; i++) {
+			acc[i] *= factor[i];
+		}
+	}
+
+	/**
+	 * It resamples an array to a coarser time step, whose value is an integer
+	 * multiple of the original one. Each new element is the average of the
+	 * original elements falling in its interval, trailing elements that do not
+	 * fill a whole interval are dropped.
+	 *
+	 * @param array the array to resample
+	 * @param ratio the number of original elements in each new interval
+	 * @return the array of interval averages
+	 */
+	public static double[] averageOverIntervals(double[] array, int ratio) {
+		if (ratio <= 0) {
+			throw new IllegalArgumentException("ratio must be a positive number");
+		}
+		double[] newArray = new double[array.length / ratio];
+		for (int i = 0; i < newArray.length; i++) {
+			double sum = 0.;
+			for (int j = i * ratio; j < (i + 1) * ratio; j++) {
+				sum += array[j];
+			}
+			newArray[i] = sum / ratio;
+		}
+		return newArray;
+	}
+
 	public static double[] changeTimeStep(double[] array, double oldTimeStep, double newTimeStep) {
 		double timeBound = oldTimeStep * array.length;
 		int newArrayLength = (int) (timeBound / newTimeStep);
@@ -0,0 +1,317 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.vehicle.analysis;
+
+import org.oristool.omnibus.metrics.AnalysisCounter;
+import org.oristool.omnibus.metrics.AnalysisStage;
+import org.oristool.omnibus.metrics.Metrics;
+import org.oristool.omnibus.metrics.MetricsRegistry;
+import org.oristool.omnibus.progress.AnalysisCancelledException;
+import org.oristool.omnibus.progress.CancellationToken;
+import org.oristool.omnibus.progress.ProgressListener;
+import org.oristool.omnibus.progress.ProgressTracker;
+import org.oristool.omnibus.vehicle.BaseQueue;
+import org.oristool.omnibus.vehicle.analysis.TransientAnalyzer.Validation;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This is an analyzer for the queues of many flows at once, with the model of
+ * {@link MMSS_QueueAnalyzer} and the same recurrence, without denials: the
+ * arrivals to a full queue are lost and not counted. The flows can have
+ * different rates, sizes and availability vectors, but the same number of
+ * time steps.
+ * <p>
+ * The states of the flows are interleaved, so that the probability of n cars
+ * in the flow f has index {@code n * flows + f}: each time step runs over
+ * contiguous vectors as wide as the number of flows, that the JIT compiler
+ * can vectorize. The flows are ordered by decreasing size, so that the states
+ * beyond the size of a flow are left out of the vectors instead of being
+ * computed as zeros. The results of each flow are copied in one row of
+ * probabilities per time step, that takes much less memory than the state
+ * matrix of {@link TransientAnalyzer#getStateMatrix()}, with an array for each
+ * state.
+ */
+public class BatchQueueAnalyzer {
+
+    private int flows;
+    private int[] sizes;
+    private int steps;
+    private double[][][] stateProbabilities;
+
+    private ProgressListener progressListener;
+    private CancellationToken cancellationToken;
+    private Validation validation = Validation.STRICT;
+
+    /**
+     * It sets the listener of the progress of the next analyses, in time steps.
+     *
+     * @param progressListener the listener, or null
+     * @return the analyzer itself, to allow iterative calls
+     */
+    public BatchQueueAnalyzer setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * It sets the token checked by the next analyses every
+     * {@value TransientAnalyzer#PROGRESS_STEPS} time steps. The partial result
+     * of the {@link AnalysisCancelledException} is the {@code double[][][]}
+     * array of the state probabilities of the flows along the time steps
+     * computed so far.
+     *
+     * @param cancellationToken the token, or null
+     * @return the analyzer itself, to allow iterative calls
+     */
+    public BatchQueueAnalyzer setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        return this;
+    }
+
+    /**
+     * It sets the checks of the probabilities of the next analyses, by default
+     * {@link Validation#STRICT}.
+     *
+     * @param validation the checks of the probabilities
+     * @return the analyzer itself, to allow iterative calls
+     */
+    public BatchQueueAnalyzer setValidation(Validation validation) {
+        this.validation = validation;
+        return this;
+    }
+
+    /**
+     * It analyzes the queues of the flows together.
+     *
+     * @param queues         the queue of each flow
+     * @param availabilities the availability vector of each flow, all with the
+     *                       same length
+     * @param timeStep       the temporal resolution
+     * @return the analyzer itself, to allow iterative calls
+     */
+    public BatchQueueAnalyzer analyze(BaseQueue[] queues, double[][] availabilities, double timeStep) {
+        checkLegality(queues, availabilities, timeStep);
+
+        MetricsRegistry metrics = Metrics.getRegistry();
+        long start = metrics.startTimer();
+
+        this.flows = queues.length;
+        this.steps = availabilities[0].length;
+        this.sizes = new int[flows];
+        for (int f = 0; f < flows; f++) {
+            sizes[f] = queues[f].getSize().intValue();
+        }
+        ProgressTracker progress = new ProgressTracker(progressListener, "Batch transient analysis", steps - 1);
+
+        // the flows are interleaved in decreasing order of size, so that the
+        // flows with n cars or more are the first active[n] of each row
+        int[] order = IntStream.range(0, flows).boxed().sorted((f, g) -> Integer.compare(sizes[g], sizes[f]))
+                .mapToInt(Integer::intValue).toArray();
+        int maxSize = sizes[order[0]];
+        int[] active = new int[maxSize + 1];
+        for (int n = 0; n <= maxSize; n++) {
+            while (active[n] < flows && sizes[order[active[n]]] >= n) {
+                active[n]++;
+            }
+        }
+
+        // the arrival and service probabilities out of each state, with an
+        // empty row above the largest queue
+        double[] arrival = new double[(maxSize + 2) * flows];
+        double[] service = new double[(maxSize + 2) * flows];
+        double[] previous = new double[(maxSize + 2) * flows];
+        double[] next = new double[(maxSize + 2) * flows];
+        this.stateProbabilities = new double[flows][][];
+        for (int j = 0; j < flows; j++) {
+            int f = order[j];
+            double pArrival = TransientAnalyzer.taylorFirstOrderExpansion(queues[f].getArrivalDistribution(),
+                    timeStep);
+            double pService = TransientAnalyzer.taylorFirstOrderExpansion(queues[f].getServiceDistribution(),
+                    timeStep);
+            BigDecimal[] initialDistribution = queues[f].getInitialDistribution();
+            stateProbabilities[f] = new double[steps][sizes[f] + 1];
+            for (int n = 0; n <= sizes[f]; n++) {
+                arrival[n * flows + j] = n < sizes[f] ? pArrival : 0;
+                service[n * flows + j] = pService * n;
+                previous[n * flows + j] = initialDistribution[n].doubleValue();
+                stateProbabilities[f][0][n] = previous[n * flows + j];
+            }
+        }
+
+        double[] availability = new double[flows];
+        double[] sum = new double[flows];
+        for (int t = 1; t < steps; t++) {
+            if (t % TransientAnalyzer.PROGRESS_STEPS == 0) {
+                progress.update(t);
+                checkCancelled(t);
+            }
+
+            for (int j = 0; j < flows; j++) {
+                availability[j] = availabilities[order[j]][t - 1];
+                sum[j] = 0;
+            }
+
+            boolean validate = isValidated(t);
+
+            // Case n = 0
+            for (int j = 0; j < flows; j++) {
+                double value = TransientAnalyzer.transition(previous[j], 0, previous[flows + j], availability[j],
+                        0, arrival[j], service[flows + j], service[j]);
+                if (validate)
+                    checkBounds(value, t, 0, order[j]);
+                next[j] = value;
+                sum[j] += value;
+            }
+
+            // Case n in [1, size], where the full queues have no arrivals and
+            // no states above them
+            for (int n = 1; n <= maxSize; n++) {
+                int base = n * flows;
+                for (int j = 0; j < active[n]; j++) {
+                    int i = base + j;
+                    double value = TransientAnalyzer.transition(previous[i], previous[i - flows],
+                            previous[i + flows], availability[j], arrival[i - flows], arrival[i],
+                            service[i + flows], service[i]);
+                    if (validate)
+                        checkBounds(value, t, n, order[j]);
+                    next[i] = value;
+                    sum[j] += value;
+                }
+            }
+
+            for (int j = 0; j < flows; j++) {
+                int f = order[j];
+                double[] state = stateProbabilities[f][t];
+                // fase di normalizzazione, solo quando la massa si è discostata da uno
+                if (Math.abs(sum[j] - 1) > TransientAnalyzer.NORMALIZATION_TOLERANCE) {
+                    for (int n = 0; n <= sizes[f]; n++) {
+                        next[n * flows + j] = next[n * flows + j] / sum[j];
+                    }
+                }
+                for (int n = 0; n <= sizes[f]; n++) {
+                    state[n] = next[n * flows + j];
+                }
+            }
+
+            double[] tmp = previous;
+            previous = next;
+            next = tmp;
+        }
+
+        progress.update(steps - 1);
+        progress.finish();
+        metrics.stopTimer(AnalysisStage.TRANSIENT, start);
+        metrics.increment(AnalysisCounter.TRANSIENT_ANALYSES, flows);
+        metrics.increment(AnalysisCounter.TRANSIENT_STEPS, (long) steps * flows);
+        metrics.increment(AnalysisCounter.TRANSIENT_STATE_UPDATES,
+                (long) steps * Arrays.stream(sizes).mapToLong(size -> size + 1).sum());
+        return this;
+    }
+
+    private void checkLegality(BaseQueue[] queues, double[][] availabilities, double timeStep) {
+        if (queues.length == 0)
+            throw new IllegalArgumentException("At least one queue is required.");
+        if (availabilities.length != queues.length)
+            throw new IllegalArgumentException("queues and availabilities must have the same length.");
+        for (int f = 0; f < queues.length; f++) {
+            queues[f].checkLegality();
+            if (availabilities[f] == null)
+                throw new IllegalStateException("Disponibilità non specificata per la coda " + f + ".");
+            if (availabilities[f].length != availabilities[0].length)
+                throw new IllegalArgumentException("The availability vectors must have the same length.");
+        }
+        if (timeStep <= 0)
+            throw new IllegalStateException("TimeStep non specificato per l'analisi.");
+    }
+
+    private static void checkBounds(double probability, int t, int n, int flow) {
+        if (probability < 0 || probability > 1)
+            throw new IllegalArgumentException(
+                    "Probability out of bounds results. Please, try with a lower timeStep. "
+                    + " [t, i, flow] -> [" + t + ", " + n + ", " + flow + "] = " + probability);
+    }
+
+    private boolean isValidated(int t) {
+        return validation == Validation.STRICT || validation == Validation.SAMPLED
+                && (t % TransientAnalyzer.VALIDATION_STEPS == 0 || t == steps - 1);
+    }
+
+    private void checkCancelled(int computedSteps) {
+        if (cancellationToken != null)
+            cancellationToken.check("Batch transient analysis", () -> {
+                double[][][] partial = new double[flows][][];
+                for (int f = 0; f < flows; f++) {
+                    partial[f] = Arrays.copyOf(stateProbabilities[f], computedSteps);
+                }
+                return partial;
+            });
+    }
+
+    /**
+     * @return the number of flows of the last analysis
+     */
+    public int getFlowCount() {
+        return flows;
+    }
+
+    /**
+     * This returns the state probabilities along time of a flow: the probability
+     * of n cars at the time step t is {@code getStateProbabilitiesAlongTime(flow)[t][n]}.
+     *
+     * @param flow the index of the flow
+     * @return the state probabilities along time
+     */
+    public double[][] getStateProbabilitiesAlongTime(int flow) {
+        return stateProbabilities[flow];
+    }
+
+    /**
+     * This returns the state probabilities along time of a flow, without copying
+     * them.
+     *
+     * @param flow the index of the flow
+     * @return the state probabilities along time, with no denials
+     */
+    public StateProbabilities getStateProbabilities(int flow) {
+        return StateProbabilities.of(stateProbabilities[flow]);
+    }
+
+    /**
+     * This returns a copy of the state probabilities along time of a flow, with
+     * the layout of {@link TransientAnalyzer#getStateMatrix()} and a single
+     * denial index. It takes more memory than the analysis itself, and it is
+     * meant for the code that cannot read
+     * {@link #getStateProbabilitiesAlongTime(int)}.
+     *
+     * @param flow the index of the flow
+     * @return the state probabilities along time, with denials
+     */
+    public double[][][] getStateMatrix(int flow) {
+        double[][][] stateMatrix = new double[steps][sizes[flow] + 1][1];
+        for (int t = 0; t < steps; t++) {
+            for (int n = 0; n <= sizes[flow]; n++) {
+                stateMatrix[t][n][0] = stateProbabilities[flow][t][n];
+            }
+        }
+        return stateMatrix;
+    }
+
+}
@@ -0,0 +1,33 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.vehicle.analysis;
+
+/**
+ * This is an analyzer for queues with the same model of
+ * {@link MMSS_QueueAnalyzer}, where all the cars in queue are served in
+ * parallel, that stores the state probabilities in single precision as
+ * {@link FloatTransientAnalyzer}.
+ */
+public class FloatMMSS_QueueAnalyzer extends FloatTransientAnalyzer {
+
+    @Override
+    protected int getServers(int n) {
+        return n;
+    }
+
+}
@@ -0,0 +1,282 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.vehicle.analysis;
+
+import org.oristool.omnibus.metrics.Metrics;
+import org.oristool.omnibus.metrics.MetricsRegistry;
+import org.oristool.omnibus.progress.AnalysisCancelledException;
+import org.oristool.omnibus.progress.CancellationToken;
+import org.oristool.omnibus.progress.ProgressListener;
+import org.oristool.omnibus.progress.ProgressTracker;
+import org.oristool.omnibus.vehicle.BaseQueue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * This is an analyzer for queues with the same model of
+ * {@link TransientAnalyzer}, that stores the state probabilities in single
+ * precision. Each time step is a flat row of floats, where the probability of
+ * n cars and d denials has index {@code n * (maxDenials + 1) + d}: without
+ * denials a time step takes about 4 bytes per state instead of the 32 of the
+ * double state matrix, made of an array for each state.
+ * <p>
+ * With {@link Arithmetic#DOUBLE}, the default, each time step is computed in
+ * double precision from the previous one, also kept in double precision, so
+ * that only the stored values are rounded and the rounding errors do not
+ * accumulate along time. With {@link Arithmetic#FLOAT} each time step is
+ * computed in single precision from the stored one. In both cases the total
+ * probability of each time step, that decides its normalization, is
+ * compensated (Kahan summation).
+ */
+public class FloatTransientAnalyzer extends TransientAnalyzer {
+
+    /**
+     * The precision of the computation of each time step.
+     */
+    public enum Arithmetic {
+        /**
+         * Time steps computed in double precision and rounded only when stored.
+         */
+        DOUBLE,
+        /**
+         * Time steps computed in single precision from the stored ones.
+         */
+        FLOAT
+    }
+
+    /**
+     * The distance of the total probability from one beyond which a time step
+     * computed in single precision is normalized.
+     */
+    protected static final float FLOAT_NORMALIZATION_TOLERANCE = 1e-6f;
+
+    protected Arithmetic arithmetic = Arithmetic.DOUBLE;
+
+    protected float[][] floatStateMatrix;
+
+    /**
+     * It sets the precision of the computation of the next analyses.
+     *
+     * @param arithmetic the precision of the computation
+     * @return the QueueAnalyzer itself, to allow iterative calls
+     */
+    public FloatTransientAnalyzer setArithmetic(Arithmetic arithmetic) {
+        this.arithmetic = arithmetic;
+        return this;
+    }
+
+    /**
+     * @return the precision of the computation
+     */
+    public Arithmetic getArithmetic() {
+        return arithmetic;
+    }
+
+    @Override
+    public FloatTransientAnalyzer setProgressListener(ProgressListener progressListener) {
+        super.setProgressListener(progressListener);
+        return this;
+    }
+
+    @Override
+    public FloatTransientAnalyzer setCancellationToken(CancellationToken cancellationToken) {
+        super.setCancellationToken(cancellationToken);
+        return this;
+    }
+
+    @Override
+    public FloatTransientAnalyzer setValidation(Validation validation) {
+        super.setValidation(validation);
+        return this;
+    }
+
+    @Override
+    public FloatTransientAnalyzer analyze(BaseQueue queue, double[] availability, double timeStep) {
+        return analyze(queue, availability, 0, timeStep);
+    }
+
+    @Override
+    public FloatTransientAnalyzer analyze(BaseQueue queue, double[] availability, int maxDenials, double timeStep) {
+        this.queue = queue.getClone();
+        this.availability = availability;
+        this.timeStep = timeStep;
+        this.maxDenials = maxDenials;
+
+        checkLegality();
+
+        MetricsRegistry metrics = Metrics.getRegistry();
+        long start = metrics.startTimer();
+        ProgressTracker progress = new ProgressTracker(progressListener, "Transient analysis",
+                getAvailability().length - 1);
+
+        double pArrival = taylorFirstOrderExpansion(queue.getArrivalDistribution(), getTimeStep());
+        double pService = taylorFirstOrderExpansion(queue.getServiceDistribution(), getTimeStep());
+
+        int queueSize = queue.getSize().intValue();
+        int width = maxDenials + 1;
+        this.stateMatrix = null;
+        this.floatStateMatrix = new float[getAvailability().length][(queueSize + 1) * width];
+
+        // the service probability of each state, zero for the empty queue
+        double[] serviceRates = new double[queueSize + 1];
+        float[] floatServiceRates = new float[queueSize + 1];
+        for (int n = 0; n <= queueSize; n++) {
+            serviceRates[n] = pService * getServers(n);
+            floatServiceRates[n] = (float) serviceRates[n];
+        }
+
+        double[] previous = new double[(queueSize + 1) * width];
+        double[] next = new double[previous.length];
+        BigDecimal[] initialDistribution = queue.getInitialDistribution();
+        for (int i = 0; i < queueSize + 1; i++) {
+            previous[i * width] = initialDistribution[i].doubleValue();
+            floatStateMatrix[0][i * width] = (float) previous[i * width];
+        }
+
+        for (int t = 1; t < getAvailability().length; t++) {
+            if (t % PROGRESS_STEPS == 0) {
+                progress.update(t);
+                checkCancelled(t);
+            }
+
+            if (arithmetic == Arithmetic.DOUBLE) {
+                step(previous, next, getAvailability()[t - 1], pArrival, serviceRates, t);
+                float[] row = floatStateMatrix[t];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (float) next[i];
+                }
+                double[] tmp = previous;
+                previous = next;
+                next = tmp;
+            } else {
+                step(floatStateMatrix[t - 1], floatStateMatrix[t], (float) getAvailability()[t - 1],
+                        (float) pArrival, floatServiceRates, t);
+            }
+        }
+
+        progress.update(getAvailability().length - 1);
+        progress.finish();
+        recordAnalysis(metrics, start);
+        return this;
+    }
+
+    private void step(float[] previous, float[] next, float availability, float pArrival,
+            float[] serviceRates, int t) {
+        int queueSize = serviceRates.length - 1;
+        int width = maxDenials + 1;
+        boolean validate = isValidated(t);
+        float sum = 0;
+        float compensation = 0;
+        for (int n = 0; n <= queueSize; n++) {
+            for (int d = 0; d <= maxDenials; d++) {
+                int i = n * width + d;
+                float below = n > 0 ? previous[i - width] : 0;
+                float above = n < queueSize ? previous[i + width] : 0;
+                float serviceIn = n < queueSize ? serviceRates[n + 1] : 0;
+                // a full queue rejects the arrivals, counted until maxDenials
+                float arrivalOut = n < queueSize || d < maxDenials ? pArrival : 0;
+                float value = transition(previous[i], below, above, availability, pArrival, arrivalOut,
+                        serviceIn, serviceRates[n]);
+                if (n == queueSize && d > 0)
+                    value += previous[i - 1] * pArrival;
+                if (validate)
+                    checkBounds(value, t, n, d);
+                next[i] = value;
+
+                float y = value - compensation;
+                float s = sum + y;
+                compensation = (s - sum) - y;
+                sum = s;
+            }
+        }
+
+        // fase di normalizzazione, solo quando la massa si è discostata da uno
+        if (Math.abs(sum - 1) > FLOAT_NORMALIZATION_TOLERANCE) {
+            for (int i = 0; i < next.length; i++) {
+                next[i] = next[i] / sum;
+            }
+        }
+    }
+
+    /**
+     * It throws if the cancellation token, if any, is cancelled.
+     *
+     * @param steps the number of time steps computed so far
+     * @throws AnalysisCancelledException with the {@code float[][]} state
+     *                                    matrix of the time steps computed so
+     *                                    far
+     */
+    @Override
+    protected void checkCancelled(int steps) {
+        if (cancellationToken != null)
+            cancellationToken.check("Transient analysis", () -> Arrays.copyOf(floatStateMatrix, steps));
+    }
+
+    /**
+     * This returns the state probabilities along time in single precision. The
+     * probability of n cars and d denials at the time step t is
+     * {@code getFloatStateMatrix()[t][n * (maxDenials + 1) + d]}.
+     *
+     * @return the state probabilities along time, with denials
+     */
+    public float[][] getFloatStateMatrix() {
+        return floatStateMatrix;
+    }
+
+    @Override
+    public StateProbabilities getStateProbabilities() {
+        return StateProbabilities.of(floatStateMatrix, maxDenials);
+    }
+
+    /**
+     * This returns a copy of the state probabilities along time in double
+     * precision, with the layout of {@link TransientAnalyzer#getStateMatrix()}.
+     * It takes more memory than the analysis itself, and it is meant for the code
+     * that cannot read {@link #getFloatStateMatrix()}.
+     *
+     * @return the state probabilities along time, with denials
+     */
+    @Override
+    public double[][][] getStateMatrix() {
+        int width = maxDenials + 1;
+        double[][][] matrix = new double[floatStateMatrix.length][floatStateMatrix[0].length / width][width];
+        for (int t = 0; t < floatStateMatrix.length; t++) {
+            for (int n = 0; n < matrix[t].length; n++) {
+                for (int d = 0; d < width; d++) {
+                    matrix[t][n][d] = floatStateMatrix[t][n * width + d];
+                }
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public double[][] getStateProbabilitiesAlongTime() {
+        int width = maxDenials + 1;
+        double[][] stateProbabilitiesAlongTime = new double[floatStateMatrix.length][floatStateMatrix[0].length
+                / width];
+        for (int t = 0; t < floatStateMatrix.length; t++) {
+            for (int i = 0; i < floatStateMatrix[t].length; i++) {
+                stateProbabilitiesAlongTime[t][i / width] += floatStateMatrix[t][i];
+            }
+        }
+        return stateProbabilitiesAlongTime;
+    }
+
+}
@@ -0,0 +1,181 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.vehicle.analysis;
+
+/**
+ * The state probabilities along time computed by a transient analysis of a
+ * queue: the probability of n cars and d denials at the time step t, whatever
+ * the precision and the layout in which the analyzer stores them.
+ */
+public interface StateProbabilities {
+
+    /**
+     * @return the number of time steps
+     */
+    int getSteps();
+
+    /**
+     * @return the number of states, the size of the queue plus one
+     */
+    int getStates();
+
+    /**
+     * @return the max number of denials
+     */
+    int getMaxDenials();
+
+    /**
+     * It returns the probability of n cars and d denials at a time step.
+     *
+     * @param t the time step
+     * @param n the number of cars
+     * @param d the number of denials
+     * @return the probability
+     */
+    double get(int t, int n, int d);
+
+    /**
+     * It returns the probability of n cars at a time step, whatever the number
+     * of denials.
+     *
+     * @param t the time step
+     * @param n the number of cars
+     * @return the probability
+     */
+    default double get(int t, int n) {
+        double probability = 0.0;
+        for (int d = 0; d <= getMaxDenials(); d++) {
+            probability += get(t, n, d);
+        }
+        return probability;
+    }
+
+    /**
+     * It wraps a state matrix in the layout of
+     * {@link TransientAnalyzer#getStateMatrix()}.
+     *
+     * @param stateMatrix the state probabilities, indexed by time step, number
+     *                    of cars and number of denials
+     * @return the state probabilities
+     */
+    static StateProbabilities of(double[][][] stateMatrix) {
+        return new StateProbabilities() {
+            @Override
+            public int getSteps() {
+                return stateMatrix.length;
+            }
+
+            @Override
+            public int getStates() {
+                return stateMatrix[0].length;
+            }
+
+            @Override
+            public int getMaxDenials() {
+                return stateMatrix[0][0].length - 1;
+            }
+
+            @Override
+            public double get(int t, int n, int d) {
+                return stateMatrix[t][n][d];
+            }
+        };
+    }
+
+    /**
+     * It wraps a state matrix in the layout of
+     * {@link FloatTransientAnalyzer#getFloatStateMatrix()}.
+     *
+     * @param floatStateMatrix the state probabilities, a flat row for each time
+     *                         step
+     * @param maxDenials       the max number of denials
+     * @return the state probabilities
+     */
+    static StateProbabilities of(float[][] floatStateMatrix, int maxDenials) {
+        int width = maxDenials + 1;
+        return new StateProbabilities() {
+            @Override
+            public int getSteps() {
+                return floatStateMatrix.length;
+            }
+
+            @Override
+            public int getStates() {
+                return floatStateMatrix[0].length / width;
+            }
+
+            @Override
+            public int getMaxDenials() {
+                return maxDenials;
+            }
+
+            @Override
+            public double get(int t, int n, int d) {
+                return floatStateMatrix[t][n * width + d];
+            }
+
+            @Override
+            public double get(int t, int n) {
+                float[] state = floatStateMatrix[t];
+                double probability = 0.0;
+                for (int i = n * width; i < (n + 1) * width; i++) {
+                    probability += state[i];
+                }
+                return probability;
+            }
+        };
+    }
+
+    /**
+     * It wraps the state probabilities of an analysis without denials, in the
+     * layout of {@link BatchQueueAnalyzer#getStateProbabilitiesAlongTime(int)}.
+     *
+     * @param stateProbabilitiesAlongTime the state probabilities, indexed by
+     *                                    time step and number of cars
+     * @return the state probabilities
+     */
+    static StateProbabilities of(double[][] stateProbabilitiesAlongTime) {
+        return new StateProbabilities() {
+            @Override
+            public int getSteps() {
+                return stateProbabilitiesAlongTime.length;
+            }
+
+            @Override
+            public int getStates() {
+                return stateProbabilitiesAlongTime[0].length;
+            }
+
+            @Override
+            public int getMaxDenials() {
+                return 0;
+            }
+
+            @Override
+            public double get(int t, int n, int d) {
+                return stateProbabilitiesAlongTime[t][n];
+            }
+
+            @Override
+            public double get(int t, int n) {
+                return stateProbabilitiesAlongTime[t][n];
+            }
+        };
+    }
+
+}
@@ -18,15 +18,47 @@
 package org.oristool.omnibus.vehicle.analysis;
 
 import org.oristool.math.function.EXP;
+import org.oristool.omnibus.metrics.AnalysisCounter;
+import org.oristool.omnibus.metrics.AnalysisStage;
+import org.oristool.omnibus.metrics.Metrics;
+import org.oristool.omnibus.metrics.MetricsRegistry;
+import org.oristool.omnibus.progress.AnalysisCancelledException;
+import org.oristool.omnibus.progress.CancellationToken;
+import org.oristool.omnibus.progress.ProgressListener;
+import org.oristool.omnibus.progress.ProgressTracker;
 import org.oristool.omnibus.vehicle.BaseQueue;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 
 /**
  * This is an analyzer for queues, based on differential equations.
  */
 public class TransientAnalyzer {
 
+    /**
+     * The checks that the state probabilities computed at each time step are in
+     * [0, 1], which fails when the time step is too large for the rates of the
+     * queue.
+     */
+    public enum Validation {
+        /**
+         * Every probability of every time step is checked.
+         */
+        STRICT,
+        /**
+         * The probabilities are checked every {@value TransientAnalyzer#VALIDATION_STEPS}
+         * time steps and at the last one. An unstable analysis keeps producing
+         * probabilities out of bounds, so it is still detected, a few time steps
+         * later.
+         */
+        SAMPLED,
+        /**
+         * No probability is checked.
+         */
+        OFF
+    }
+
     protected BaseQueue queue;
 
     protected double[] availability;
@@ -35,6 +67,29 @@ public class TransientAnalyzer {
 
     protected double[][][] stateMatrix;
 
+    /**
+     * The number of time steps between two checks of the progress and of the
+     * cancellation token.
+     */
+    protected static final int PROGRESS_STEPS = 1024;
+
+    /**
+     * The number of time steps between two checks of the probabilities with
+     * {@link Validation#SAMPLED}.
+     */
+    protected static final int VALIDATION_STEPS = 64;
+
+    /**
+     * The distance of the total probability from one beyond which a time step is
+     * normalized. Each time step preserves the total probability up to rounding
+     * errors, so that it is normalized only when they have accumulated.
+     */
+    protected static final double NORMALIZATION_TOLERANCE = 1e-12;
+
+    protected ProgressListener progressListener;
+    protected CancellationToken cancellationToken;
+    protected Validation validation = Validation.STRICT;
+
     protected void checkLegality() {
         queue.checkLegality();
         if (getAvailability() == null)
@@ -46,6 +101,46 @@ public class TransientAnalyzer {
                     "Il massimo numero di rigetti, maxDenials, deve essere maggiore o uguale a zero.");
     }
 
+    /**
+     * It sets the listener of the progress of the next analyses, in time steps.
+     * The analysis stops with an {@link AnalysisCancelledException} if the
+     * listener cancels it.
+     *
+     * @param progressListener the listener, or null
+     * @return the QueueAnalyzer itself, to allow iterative calls
+     */
+    public TransientAnalyzer setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * It sets the checks of the probabilities of the next analyses, by default
+     * {@link Validation#STRICT}.
+     *
+     * @param validation the checks of the probabilities
+     * @return the QueueAnalyzer itself, to allow iterative calls
+     */
+    public TransientAnalyzer setValidation(Validation validation) {
+        this.validation = validation;
+        return this;
+    }
+
+    /**
+     * It sets the token checked by the next analyses every
+     * {@value #PROGRESS_STEPS} time steps. Once the token is cancelled, the
+     * analysis stops with an {@link AnalysisCancelledException} whose partial
+     * result is the {@code double[][][]} state matrix of the time steps computed
+     * so far.
+     *
+     * @param cancellationToken the token, or null
+     * @return the QueueAnalyzer itself, to allow iterative calls
+     */
+    public TransientAnalyzer setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        return this;
+    }
+
     /**
      * This is the real analyzer. It receives the queue, the array of the
      * availabilities of the obstacles, the max number of denials of which computing probabilities,
@@ -81,90 +176,210 @@ public class TransientAnalyzer {
 
         checkLegality();
 
+        MetricsRegistry metrics = Metrics.getRegistry();
+        long start = metrics.startTimer();
+        ProgressTracker progress = new ProgressTracker(progressListener, "Transient analysis",
+                getAvailability().length - 1);
+
         double pArrival = taylorFirstOrderExpansion(queue.getArrivalDistribution(), getTimeStep());
         double pService = taylorFirstOrderExpansion(queue.getServiceDistribution(), getTimeStep());
 
         int queueSize = queue.getSize().intValue();
+        int width = maxDenials + 1;
         this.stateMatrix = new double[getAvailability().length][queueSize + 1][maxDenials + 1];
 
+        // the service probability of each state, zero for the empty queue
+        double[] serviceRates = new double[queueSize + 1];
+        for (int n = 0; n <= queueSize; n++) {
+            serviceRates[n] = pService * getServers(n);
+        }
+
+        double[] previous = new double[(queueSize + 1) * width];
+        double[] next = new double[previous.length];
         BigDecimal[] initialDistribution = queue.getInitialDistribution();
         for (int i = 0; i < queueSize + 1; i++) {
-            this.stateMatrix[0][i][0] = initialDistribution[i].doubleValue();
+            previous[i * width] = initialDistribution[i].doubleValue();
+            this.stateMatrix[0][i][0] = previous[i * width];
         }
 
-        // this.stateProbabilitiesAlongTime[0][queue.getInitialElements().intValue()] = 1.;
-
         for (int t = 1; t < getAvailability().length; t++) {
+            if (t % PROGRESS_STEPS == 0) {
+                progress.update(t);
+                checkCancelled(t);
+            }
 
-            double sum = 0;
-
-            for (int d = 0; d <= maxDenials; d++) {
-
-                // Case n = 0
-                stateMatrix[t][0][d] = stateMatrix[t - 1][0][d]
-                        + stateMatrix[t - 1][1][d] * getAvailability()[t - 1] * pService
-                        - stateMatrix[t - 1][0][d] * pArrival;
-                sum += stateMatrix[t][0][d];
-
-                // Case n in [1, QUEUE_SIZE -1]
-                for (int n = 1; n < queueSize; n++) {
-                    stateMatrix[t][n][d] = stateMatrix[t - 1][n][d]
-                            + stateMatrix[t - 1][n + 1][d] * getAvailability()[t - 1] * pService
-                            + stateMatrix[t - 1][n - 1][d] * pArrival
-                            - stateMatrix[t - 1][n][d] * getAvailability()[t - 1] * pService
-                            - stateMatrix[t - 1][n][d] * pArrival;
-
-                    sum += stateMatrix[t][n][d];
-                }
+            step(previous, next, getAvailability()[t - 1], pArrival, serviceRates, t);
+            for (int n = 0; n <= queueSize; n++) {
+                System.arraycopy(next, n * width, stateMatrix[t][n], 0, width);
+            }
+            double[] tmp = previous;
+            previous = next;
+            next = tmp;
+        }
 
-                // Case n = QUEUE_SIZE
-
-                if (d < maxDenials) {
-                    if (d == 0) {
-                        stateMatrix[t][queueSize][0] = stateMatrix[t - 1][queueSize][0]
-                                + stateMatrix[t - 1][queueSize - 1][0] * pArrival
-                                - stateMatrix[t - 1][queueSize][0] * getAvailability()[t - 1] * pService
-                                - stateMatrix[t - 1][queueSize][0] * pArrival;
-
-                    } else { // d > 0 && d != maxDenials
-                        stateMatrix[t][queueSize][d] = stateMatrix[t - 1][queueSize][d]
-                                + stateMatrix[t - 1][queueSize - 1][d] * pArrival
-                                - stateMatrix[t - 1][queueSize][d] * getAvailability()[t - 1] * pService
-                                + stateMatrix[t - 1][queueSize][d - 1] * pArrival
-                                - stateMatrix[t - 1][queueSize][d] * pArrival;
-                    }
-                } else { // d == maxDenials
-                    if (d == 0) {
-                        stateMatrix[t][queueSize][0] = stateMatrix[t - 1][queueSize][0]
-                                + stateMatrix[t - 1][queueSize - 1][0] * pArrival
-                                - stateMatrix[t - 1][queueSize][0] * getAvailability()[t - 1] * pService;
-                    } else {
-                        stateMatrix[t][queueSize][d] = stateMatrix[t - 1][queueSize][d]
-                                + stateMatrix[t - 1][queueSize - 1][d] * pArrival
-                                - stateMatrix[t - 1][queueSize][d] * getAvailability()[t - 1] * pService
-                                + stateMatrix[t - 1][queueSize][d - 1] * pArrival;
-                    }
-                }
+        progress.update(getAvailability().length - 1);
+        progress.finish();
+        recordAnalysis(metrics, start);
+        return this;
+    }
 
-                sum += stateMatrix[t][queueSize][d];
+    /**
+     * It returns the number of cars served in parallel, at the service rate,
+     * when there are n cars in queue. This analyzer serves one car at a time.
+     *
+     * @param n the number of cars in queue
+     * @return the number of servers busy
+     */
+    protected int getServers(int n) {
+        return Math.min(n, 1);
+    }
 
-                for (int i = 0; i <= queueSize; i++) {
-                    if (stateMatrix[t][i][d] < 0 || stateMatrix[t][i][d] > 1) {
-                        throw new IllegalArgumentException(
-                                "Probability out of bounds results. Please, try with a lower timeStep.");
-                    }
-                }
+    /**
+     * It computes a time step of the state probabilities, stored in flat rows
+     * where the probability of n cars and d denials has index
+     * {@code n * (maxDenials + 1) + d}. The probabilities are checked as they
+     * are computed, and normalized only when their total has moved away from
+     * one.
+     *
+     * @param previous     the probabilities of the previous time step
+     * @param next         the probabilities of the time step, written
+     * @param availability the availability of the obstacles in the previous
+     *                     time step
+     * @param pArrival     the arrival probability in a time step
+     * @param serviceRates the service probability in a time step of each state
+     * @param t            the time step
+     */
+    protected void step(double[] previous, double[] next, double availability, double pArrival,
+            double[] serviceRates, int t) {
+        int queueSize = serviceRates.length - 1;
+        int width = maxDenials + 1;
+        boolean validate = isValidated(t);
+        double sum = 0;
+        double compensation = 0;
+        for (int n = 0; n <= queueSize; n++) {
+            for (int d = 0; d <= maxDenials; d++) {
+                int i = n * width + d;
+                double below = n > 0 ? previous[i - width] : 0;
+                double above = n < queueSize ? previous[i + width] : 0;
+                double serviceIn = n < queueSize ? serviceRates[n + 1] : 0;
+                // a full queue rejects the arrivals, counted until maxDenials
+                double arrivalOut = n < queueSize || d < maxDenials ? pArrival : 0;
+                double value = transition(previous[i], below, above, availability, pArrival, arrivalOut,
+                        serviceIn, serviceRates[n]);
+                if (n == queueSize && d > 0)
+                    value += previous[i - 1] * pArrival;
+                if (validate)
+                    checkBounds(value, t, n, d);
+                next[i] = value;
+
+                double y = value - compensation;
+                double s = sum + y;
+                compensation = (s - sum) - y;
+                sum = s;
             }
+        }
 
-            // fase di normalizzazione
-            for (int n = 0; n <= queueSize; n++) {
-                for (int d = 0; d <= maxDenials; d++) {
-                    stateMatrix[t][n][d] = stateMatrix[t][n][d] / sum;
-                }
+        // fase di normalizzazione, solo quando la massa si è discostata da uno
+        if (Math.abs(sum - 1) > NORMALIZATION_TOLERANCE) {
+            for (int i = 0; i < next.length; i++) {
+                next[i] = next[i] / sum;
             }
         }
+    }
 
-        return this;
+    /**
+     * It returns the probability of a state after a time step, the recurrence
+     * shared by all the analyzers: the state keeps its probability except for
+     * the arrivals and the services out of it, and receives the arrivals from
+     * the state below and the services from the state above.
+     *
+     * @param p            the probability of the state
+     * @param below        the probability of the state with one car less
+     * @param above        the probability of the state with one car more
+     * @param availability the availability of the obstacles
+     * @param arrivalIn    the arrival probability out of the state below
+     * @param arrivalOut   the arrival probability out of the state
+     * @param serviceIn    the service probability out of the state above
+     * @param serviceOut   the service probability out of the state
+     * @return the probability of the state at the next time step
+     */
+    protected static double transition(double p, double below, double above, double availability,
+            double arrivalIn, double arrivalOut, double serviceIn, double serviceOut) {
+        return p - p * (availability * serviceOut + arrivalOut) + below * arrivalIn
+                + above * availability * serviceIn;
+    }
+
+    /**
+     * It returns the probability of a state after a time step, in single
+     * precision, as {@link #transition(double, double, double, double, double,
+     * double, double, double)}.
+     *
+     * @param p            the probability of the state
+     * @param below        the probability of the state with one car less
+     * @param above        the probability of the state with one car more
+     * @param availability the availability of the obstacles
+     * @param arrivalIn    the arrival probability out of the state below
+     * @param arrivalOut   the arrival probability out of the state
+     * @param serviceIn    the service probability out of the state above
+     * @param serviceOut   the service probability out of the state
+     * @return the probability of the state at the next time step
+     */
+    protected static float transition(float p, float below, float above, float availability,
+            float arrivalIn, float arrivalOut, float serviceIn, float serviceOut) {
+        return p - p * (availability * serviceOut + arrivalOut) + below * arrivalIn
+                + above * availability * serviceIn;
+    }
+
+    /**
+     * @param t the time step
+     * @return true if the probabilities of the time step should be checked
+     */
+    protected boolean isValidated(int t) {
+        return validation == Validation.STRICT || validation == Validation.SAMPLED
+                && (t % VALIDATION_STEPS == 0 || t == getAvailability().length - 1);
+    }
+
+    /**
+     * It checks that a state probability is in [0, 1].
+     *
+     * @param probability the probability
+     * @param t           the time step
+     * @param n           the number of cars
+     * @param d           the number of denials
+     * @throws IllegalArgumentException if the probability is out of bounds
+     */
+    protected static void checkBounds(double probability, int t, int n, int d) {
+        if (probability < 0 || probability > 1)
+            throw new IllegalArgumentException(
+                    "Probability out of bounds results. Please, try with a lower timeStep. "
+                    + " [t, i, d] -> [" + t + ", " + n + ", " + d + "] = " + probability);
+    }
+
+    /**
+     * It throws if the cancellation token, if any, is cancelled.
+     *
+     * @param steps the number of time steps computed so far
+     * @throws AnalysisCancelledException with the state matrix of the time steps
+     *                                    computed so far
+     */
+    protected void checkCancelled(int steps) {
+        if (cancellationToken != null)
+            cancellationToken.check("Transient analysis", () -> Arrays.copyOf(stateMatrix, steps));
+    }
+
+    /**
+     * It records the duration and the size of the analysis just completed.
+     *
+     * @param metrics the registry
+     * @param start   the start time returned by the registry
+     */
+    protected void recordAnalysis(MetricsRegistry metrics, long start) {
+        metrics.stopTimer(AnalysisStage.TRANSIENT, start);
+        metrics.increment(AnalysisCounter.TRANSIENT_ANALYSES, 1);
+        int steps = getAvailability().length;
+        metrics.increment(AnalysisCounter.TRANSIENT_STEPS, steps);
+        metrics.increment(AnalysisCounter.TRANSIENT_STATE_UPDATES,
+                (long) steps * (queue.getSize().intValue() + 1) * (maxDenials + 1));
     }
 
     protected static double taylorFirstOrderExpansion(EXP function, double value) {
@@ -180,6 +395,16 @@ public class TransientAnalyzer {
         return stateMatrix;
     }
 
+    /**
+     * This returns the state probabilities along time of the last analysis,
+     * without copying them.
+     *
+     * @return the state probabilities along time, with denials
+     */
+    public StateProbabilities getStateProbabilities() {
+        return StateProbabilities.of(stateMatrix);
+    }
+
     /**
      * This returns the states probabilities along time without taking care of denials.
      *
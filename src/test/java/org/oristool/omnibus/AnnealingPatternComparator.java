@@ -0,0 +1,107 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus;
+
+import org.oristool.omnibus.bestsempattern.MinMaxOccupationSemAnalyzer;
+import org.oristool.omnibus.bestsempattern.ScenarioDefiner;
+import org.oristool.omnibus.bestsempattern.SemPatternGenerator;
+import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.intersection.FlowMetrics;
+import org.oristool.omnibus.intersection.pattern.AnnealingPatternOptimizer;
+import org.oristool.omnibus.intersection.pattern.FlowResultCache;
+import org.oristool.omnibus.intersection.pattern.PatternNeighbourhood;
+import org.oristool.omnibus.intersection.pattern.PatternSearch;
+import org.oristool.omnibus.intersection.pattern.SlotPattern;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Ricerca del pattern migliore dello scenario della tabella 3 con simulated
+ * annealing, partendo da pattern casuali e con un budget di valutazioni, invece
+ * della ricerca esaustiva.
+ */
+public class AnnealingPatternComparator {
+
+    private static int minimumSlot = 15;
+    private static int redTime = 5;
+    private static int shiftSeconds = 5;
+    private static int restarts = 8;
+    private static long maxEvaluations = 200;
+
+    public static void main(String[] args) {
+
+        ScenarioDefiner.roadLenghts = Arrays.asList(
+                BigDecimal.valueOf(150),
+                BigDecimal.valueOf(150),
+                BigDecimal.valueOf(150)
+        );
+
+        ScenarioDefiner.arrivalRates = Arrays.asList(
+                BigDecimal.valueOf(0.05),
+                BigDecimal.valueOf(0.1),
+                BigDecimal.valueOf(0.15)
+        );
+
+        ScenarioDefiner.maxVehicleSpeedsKmh = Arrays.asList(
+                new BigDecimal("50"),
+                new BigDecimal("50"),
+                new BigDecimal("50")
+        );
+
+        ScenarioDefiner.updateFields();
+
+        Date start = new Date();
+
+        CarFlow[] carFlows = ScenarioDefiner.createScenario();
+
+        // pattern di partenza casuali, con tutti i flussi e primo e ultimo flusso diversi
+        List<SlotPattern> starts = new ArrayList<>();
+        while (starts.size() < restarts) {
+            SlotPattern pattern = SemPatternGenerator.generateRandomPatternWithRedTime(
+                    carFlows.length, ScenarioDefiner.semPeriod.intValue(), minimumSlot, redTime);
+            if (pattern.getFlow(0) != pattern.getFlow(pattern.getSlotCount() - 2)
+                    && pattern.getSlotCount() >= 2 * carFlows.length)
+                starts.add(pattern);
+        }
+
+        FlowResultCache<FlowMetrics> flowResultCache = new FlowResultCache<>();
+        PatternSearch.Result result = new AnnealingPatternOptimizer(
+                () -> new MinMaxOccupationSemAnalyzer().setTimeStep(ScenarioDefiner.timeStep).setCarFlows(carFlows)
+                        .setFlowResultCache(flowResultCache),
+                PatternNeighbourhood.slotFlips(carFlows.length)
+                        .and(PatternNeighbourhood.greenShifts(shiftSeconds, minimumSlot)))
+                .setTemperature(0.05, 0.99)
+                .setMaxEvaluations(maxEvaluations)
+                .optimize(starts);
+
+        System.out.println(result.getEvaluatedPatterns() + " patterns analyzed, "
+                + flowResultCache.getHits() + " flow results reused");
+        System.out.println("Best reward: " + result.getBestValue());
+        System.out.println(result.getBestPattern());
+
+        Date end = new Date();
+
+        System.out.println("Duration = " + (end.getTime() - start.getTime()) + " ms");
+
+        System.exit(0);
+    }
+}
@@ -0,0 +1,100 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus;
+
+import org.oristool.omnibus.bestsempattern.MinMaxOccupationSemAnalyzer;
+import org.oristool.omnibus.bestsempattern.ScenarioDefiner;
+import org.oristool.omnibus.bestsempattern.SemPatternGenerator;
+import org.oristool.omnibus.bestsempattern.VehicleFlow;
+import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.intersection.FlowMetrics;
+import org.oristool.omnibus.intersection.pattern.FlowResultCache;
+import org.oristool.omnibus.intersection.pattern.OccupationLowerBound;
+import org.oristool.omnibus.intersection.pattern.PatternSearch;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Ricerca del pattern migliore dello scenario della tabella 3 con branch and
+ * bound: i sottopattern il cui lower bound non è migliore del pattern migliore
+ * trovato finora non vengono estesi, e la valutazione di un pattern si ferma
+ * appena un flusso supera il migliore. Il pattern migliore coincide con quello
+ * della ricerca esaustiva, ma i valori degli altri pattern non sono calcolati.
+ */
+public class BranchAndBoundPatternComparator {
+
+    private static List<Integer> semSlotDurations = Arrays.asList(15, 25, 35);
+    private static int redTime = 5;
+
+    public static void main(String[] args) {
+
+        ScenarioDefiner.roadLenghts = Arrays.asList(
+                BigDecimal.valueOf(150),
+                BigDecimal.valueOf(150),
+                BigDecimal.valueOf(150)
+        );
+
+        ScenarioDefiner.arrivalRates = Arrays.asList(
+                BigDecimal.valueOf(0.05),
+                BigDecimal.valueOf(0.1),
+                BigDecimal.valueOf(0.15)
+        );
+
+        ScenarioDefiner.maxVehicleSpeedsKmh = Arrays.asList(
+                new BigDecimal("50"),
+                new BigDecimal("50"),
+                new BigDecimal("50")
+        );
+
+        ScenarioDefiner.updateFields();
+
+        Date start = new Date();
+
+        CarFlow[] carFlows = ScenarioDefiner.createScenario();
+
+        List<VehicleFlow> vehicleFlows = new ArrayList<>();
+        for (int i = 0; i < carFlows.length; i++) {
+            vehicleFlows.add(new VehicleFlow(Integer.toString(i), semSlotDurations));
+        }
+
+        OccupationLowerBound lowerBound = new OccupationLowerBound(ScenarioDefiner.timeStep, carFlows);
+        FlowResultCache<FlowMetrics> flowResultCache = new FlowResultCache<>();
+        PatternSearch search = new PatternSearch(
+                () -> new MinMaxOccupationSemAnalyzer().setTimeStep(ScenarioDefiner.timeStep).setCarFlows(carFlows)
+                        .setFlowResultCache(flowResultCache))
+                .setPruning(true);
+        PatternSearch.Result result = search.search(SemPatternGenerator.spliterateAllSlotPatternWithGreenSlotSets(
+                vehicleFlows, ScenarioDefiner.semPeriod.intValue(), redTime,
+                prefix -> lowerBound.lowerBound(prefix) >= search.getCurrentBestValue()));
+
+        System.out.println(result.getEvaluatedPatterns() + " patterns analyzed, "
+                + flowResultCache.getHits() + " flow results reused");
+        System.out.println("Best reward: " + result.getBestValue());
+        System.out.println(result.getBestPattern());
+
+        Date end = new Date();
+
+        System.out.println("Duration = " + (end.getTime() - start.getTime()) + " ms");
+
+        System.exit(0);
+    }
+}
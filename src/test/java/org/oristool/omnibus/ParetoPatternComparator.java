@@ -0,0 +1,152 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import org.oristool.omnibus.bestsempattern.ObjectiveSemAnalyzer;
+import org.oristool.omnibus.bestsempattern.ScenarioDefiner;
+import org.oristool.omnibus.bestsempattern.SemPatternGenerator;
+import org.oristool.omnibus.bestsempattern.VehicleFlow;
+import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.intersection.FlowMetrics;
+import org.oristool.omnibus.intersection.pattern.FlowResultCache;
+import org.oristool.omnibus.intersection.pattern.ParetoFront;
+import org.oristool.omnibus.intersection.pattern.PatternObjective;
+import org.oristool.omnibus.intersection.pattern.PatternResultListener;
+import org.oristool.omnibus.intersection.pattern.PatternSearch;
+import org.oristool.omnibus.intersection.pattern.SlotPattern;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Ricerca esaustiva sullo scenario della tabella 3 con più obiettivi: per ogni
+ * pattern scrive i valori di tutti gli obiettivi e alla fine stampa il fronte
+ * di Pareto. Ogni flusso viene analizzato una sola volta per tutti gli
+ * obiettivi.
+ */
+public class ParetoPatternComparator {
+
+    private static List<Integer> semSlotDurations = Arrays.asList(15, 25, 35);
+    private static int redTime = 5;
+
+    public static void main(String[] args) throws IOException {
+
+        ScenarioDefiner.roadLenghts = Arrays.asList(
+                BigDecimal.valueOf(150),
+                BigDecimal.valueOf(150),
+                BigDecimal.valueOf(150)
+        );
+
+        ScenarioDefiner.arrivalRates = Arrays.asList(
+                BigDecimal.valueOf(0.05),
+                BigDecimal.valueOf(0.1),
+                BigDecimal.valueOf(0.15)
+        );
+
+        ScenarioDefiner.maxVehicleSpeedsKmh = Arrays.asList(
+                new BigDecimal("50"),
+                new BigDecimal("50"),
+                new BigDecimal("50")
+        );
+
+        ScenarioDefiner.updateFields();
+
+        PatternObjective[] objectives = {
+                PatternObjective.maxOccupation(),
+                PatternObjective.meanDelay(),
+                PatternObjective.throughputLoss(),
+                PatternObjective.spillback()
+        };
+
+        Date start = new Date();
+
+        File resultsFolder = new File("results");
+        if (!resultsFolder.exists())
+            resultsFolder.mkdir();
+
+        String executionFolderName = "pareto_omnibus";
+        File executionFolder = new File("results/" + executionFolderName);
+        executionFolder.mkdir();
+
+        CSVWriter resultListWriter = new CSVWriter(
+                new FileWriter("results/" + executionFolderName + "/" + executionFolderName + ".csv"), '\t'
+        );
+        String[] header = new String[objectives.length + 1];
+        header[0] = "pattern";
+        for (int i = 0; i < objectives.length; i++) {
+            header[i + 1] = objectives[i].getName();
+        }
+        resultListWriter.writeNext(header);
+
+        CarFlow[] carFlows = ScenarioDefiner.createScenario();
+
+        List<VehicleFlow> vehicleFlows = new ArrayList<>();
+        for (int i = 0; i < carFlows.length; i++) {
+            vehicleFlows.add(new VehicleFlow(Integer.toString(i), semSlotDurations));
+        }
+
+        FlowResultCache<FlowMetrics> flowResultCache = new FlowResultCache<>();
+        ParetoFront paretoFront = new ParetoFront();
+        PatternSearch.Result result = new PatternSearch(
+                () -> ((ObjectiveSemAnalyzer) new ObjectiveSemAnalyzer().setTimeStep(ScenarioDefiner.timeStep)
+                        .setCarFlows(carFlows).setFlowResultCache(flowResultCache)).setObjectives(objectives))
+                .setParetoFront(paretoFront)
+                .setResultListener(new PatternResultListener() {
+                    @Override
+                    public void onResult(SlotPattern pattern, double value) {
+                        onResult(pattern, new double[] { value });
+                    }
+
+                    @Override
+                    public void onResult(SlotPattern pattern, double[] values) {
+                        String[] line = new String[values.length + 1];
+                        line[0] = pattern.toString();
+                        for (int i = 0; i < values.length; i++) {
+                            line[i + 1] = Double.toString(values[i]);
+                        }
+                        resultListWriter.writeNext(line);
+                    }
+                })
+                .search(SemPatternGenerator.spliterateAllSlotPatternWithGreenSlotSets(
+                        vehicleFlows, ScenarioDefiner.semPeriod.intValue(), redTime));
+
+        System.out.println(result.getEvaluatedPatterns() + " patterns analyzed, "
+                + flowResultCache.getHits() + " flow results reused");
+        System.out.println("Best " + objectives[0].getName() + ": " + result.getBestValue());
+        System.out.println(result.getBestPattern());
+        System.out.println("Pareto front " + Arrays.toString(header) + ":");
+        for (ParetoFront.Entry entry : paretoFront.getEntries()) {
+            System.out.println(entry);
+        }
+
+        resultListWriter.close();
+
+        Date end = new Date();
+
+        System.out.println("Duration = " + (end.getTime() - start.getTime()) + " ms");
+
+        System.exit(0);
+    }
+}
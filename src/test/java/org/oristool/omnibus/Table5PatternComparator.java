@@ -17,25 +17,15 @@
 
 package org.oristool.omnibus;
 
-import au.com.bytecode.opencsv.CSVWriter;
-import org.oristool.omnibus.bestsempattern.MinMaxOccupationSemAnalyzer;
+import org.oristool.omnibus.bestsempattern.PatternComparatorSearch;
 import org.oristool.omnibus.bestsempattern.ScenarioDefiner;
-import org.oristool.omnibus.bestsempattern.SemPatternGenerator;
-import org.oristool.omnibus.bestsempattern.VehicleFlow;
-import org.oristool.omnibus.intersection.CarFlow;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.*;
-import java.util.concurrent.locks.ReentrantLock;
 
 public class Table5PatternComparator {
 
@@ -74,67 +64,8 @@ public class Table5PatternComparator {
         File executionFolder = new File("results/" + executionFolderName);
         executionFolder.mkdir();
 
-        CSVWriter resultListWriter = new CSVWriter(
-                new FileWriter("results/" + executionFolderName + "/" + executionFolderName + ".csv"), '\t'
-        );
-        ReentrantLock resultListWriterLock = new ReentrantLock();
-
-        // END
-
-        CarFlow[] carFlows = ScenarioDefiner.createScenario();
-
-        int threadPoolSize = Runtime.getRuntime().availableProcessors();
-        ExecutorService executorService = Executors.newFixedThreadPool(threadPoolSize);
-
-        double bestOccupationPercentage = Double.MAX_VALUE;
-        String bestPattern = null;
-
-        List<VehicleFlow> vehicleFlows = new ArrayList<>();
-        for (int i = 0; i < carFlows.length; i++) {
-            vehicleFlows.add(new VehicleFlow(Integer.toString(i), semSlotDurations));
-        }
-
-        BlockingQueue<String> patternsToAnalyze = new LinkedBlockingQueue<>();
-        SemPatternGenerator
-                .generateAllPatternWithGreenSlotSets(vehicleFlows, ScenarioDefiner.semPeriod.intValue(), redTime)
-                .forEach(sp -> patternsToAnalyze.add(sp.getSchedule()));
-        // inserisce pattern "avvelenati" per terminare i processi
-        for (int i = 0; i < threadPoolSize; i++) {
-            patternsToAnalyze.add("%%%%");
-        }
-
-        System.out.println((patternsToAnalyze.size() - threadPoolSize) + " patterns to analyze");
-        for (int i = 0; i < (patternsToAnalyze.size() - threadPoolSize); i++) {
-            System.out.print("x");
-        }
-        List<Callable<Double>> semAnalyzers = new ArrayList<>();
-        List<Future<Double>> futures = new ArrayList<>();
-        for (int i = 0; i < threadPoolSize; i++) {
-            MinMaxOccupationSemAnalyzer semAnalyzer = new MinMaxOccupationSemAnalyzer();
-            semAnalyzer.setResultListWriter(resultListWriter, resultListWriterLock);
-            semAnalyzer.setCarFlows(carFlows);
-            semAnalyzer.setTimeStep(ScenarioDefiner.timeStep);
-            semAnalyzer.setPatternsToAnalyze(patternsToAnalyze);
-            semAnalyzers.add(semAnalyzer);
-            futures.add(executorService.submit(semAnalyzer));
-        }
-
-        // ATTESA ESECUZIONE ANALISI PATTERN E RACCOLTA RISULTATI
-        try {
-            for (int i = 0; i < futures.size(); i++) {
-                Double maxWeightedIntegral = futures.get(i).get();
-                if (maxWeightedIntegral < bestOccupationPercentage) {
-                    bestOccupationPercentage = maxWeightedIntegral;
-                    bestPattern = ((MinMaxOccupationSemAnalyzer) semAnalyzers.get(i)).getBestPattern();
-                }
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
-        }
-        System.out.println("Best reward: " + bestOccupationPercentage);
-        System.out.println(bestPattern);
-
-        resultListWriter.close();
+        PatternComparatorSearch.search("results/" + executionFolderName + "/" + executionFolderName,
+                semSlotDurations, redTime);
 
         Date end = new Date();
 
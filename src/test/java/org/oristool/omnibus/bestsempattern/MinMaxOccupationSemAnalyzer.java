@@ -17,72 +17,48 @@
 
 package org.oristool.omnibus.bestsempattern;
 
-import au.com.bytecode.opencsv.CSVWriter;
-
 import org.oristool.omnibus.intersection.CarFlow;
-import org.oristool.omnibus.intersection.analysis.DTMCSteadyStateAnalyzer;
-import org.oristool.omnibus.vehicle.analysis.MMSS_QueueAnalyzer;
-
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
+import org.oristool.omnibus.intersection.pattern.SlotPattern;
 
 public class MinMaxOccupationSemAnalyzer extends SemAnalyzer {
 
-    private double bestPatternOccupationPercentage = Double.MAX_VALUE;
-    private ReentrantLock resultListWriterLock;
-    private CSVWriter resultListWriter;
+    // ordine di analisi dei flussi: il più occupato nell'ultima valutazione è il primo
+    private int[] flowOrder;
 
     @Override
-    public Double call() {
-        String pattern;
-        while (!(pattern = patternsToAnalyze.poll()).equals("%%%%")) {
-            Utils.assignGreen(pattern, carSemaphores);
+    public double evaluate(SlotPattern pattern) {
+        return evaluate(pattern, Double.POSITIVE_INFINITY);
+    }
 
-            double maxOccupationPercentage = Double.MIN_VALUE;
+    /**
+     * Branch and bound: analizza per primi i flussi che sono risultati più critici
+     * e si ferma appena un flusso raggiunge il bound, perché il massimo non può più
+     * scendere sotto di esso.
+     */
+    @Override
+    public double evaluate(SlotPattern pattern, double bound) {
+        pattern.applyTo(carSemaphores);
+        if (flowOrder == null || flowOrder.length != carFlows.length) {
+            flowOrder = new int[carFlows.length];
             for (int i = 0; i < carFlows.length; i++) {
-                double w = getMaxOccupationPercentage(carFlows[i]);
-                maxOccupationPercentage = Math.max(maxOccupationPercentage, w);
+                flowOrder[i] = i;
             }
+        }
 
-            resultListWriterLock.lock();
-            resultListWriter.writeNext(List.of(
-                    pattern, Double.toString(maxOccupationPercentage)
-            ).toArray(new String[1]));
-            resultListWriterLock.unlock();
-
-            if (maxOccupationPercentage < this.bestPatternOccupationPercentage) {
-                this.bestPattern = pattern;
-                this.bestPatternOccupationPercentage = maxOccupationPercentage;
+        double maxOccupationPercentage = Double.MIN_VALUE;
+        for (int k = 0; k < flowOrder.length && maxOccupationPercentage < bound; k++) {
+            int i = flowOrder[k];
+            double w = flowMetrics(i).getMaxOccupation();
+            if (w > maxOccupationPercentage) {
+                maxOccupationPercentage = w;
+                System.arraycopy(flowOrder, 0, flowOrder, 1, k);
+                flowOrder[0] = i;
             }
-            System.out.print("\b");
         }
-        return bestPatternOccupationPercentage;
+        return maxOccupationPercentage;
     }
 
     public double getMaxOccupationPercentage(CarFlow carFlow) {
-        double[] steadyStateDistribution = carFlow.analyzeSteadyStateDistribution(new DTMCSteadyStateAnalyzer(), new MMSS_QueueAnalyzer(),
-                timeStep).getSteadyStateDistribution();
-
-        BigDecimal[] bdDist = Arrays.stream(steadyStateDistribution).mapToObj(BigDecimal::valueOf)
-                .collect(Collectors.toList()).toArray(new BigDecimal[0]);
-
-        carFlow.getQueue().setInitialDistribution(bdDist);
-
-        return Arrays.stream(carFlow.analyzeQueue(
-                                new MMSS_QueueAnalyzer(),
-                                BigInteger.valueOf(carFlow.getObstaclesHyperPeriod()),
-                                timeStep)
-                        .getExpectedStateAlongTime())
-                .max().getAsDouble()
-                / carFlow.getQueue().getSize().doubleValue();
-    }
-
-    public void setResultListWriter(CSVWriter resultListWriter, ReentrantLock resultListWriterLock) {
-        this.resultListWriter = resultListWriter;
-        this.resultListWriterLock = resultListWriterLock;
+        return analyzeFlow(carFlow).getFlowMetrics().getMaxOccupation();
     }
-}
\ No newline at end of file
+}
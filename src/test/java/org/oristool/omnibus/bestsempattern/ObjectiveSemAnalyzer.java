@@ -0,0 +1,61 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.bestsempattern;
+
+import org.oristool.omnibus.intersection.FlowMetrics;
+import org.oristool.omnibus.intersection.pattern.MultiObjectiveEvaluator;
+import org.oristool.omnibus.intersection.pattern.PatternObjective;
+import org.oristool.omnibus.intersection.pattern.SlotPattern;
+
+/**
+ * Valuta i pattern rispetto a più obiettivi, calcolati tutti sulle stesse
+ * metriche dei flussi: ogni flusso viene analizzato una sola volta per pattern
+ * (o mai, se il piano del suo semaforo è in cache). Il primo obiettivo è quello
+ * principale.
+ */
+public class ObjectiveSemAnalyzer extends SemAnalyzer implements MultiObjectiveEvaluator {
+
+    private PatternObjective[] objectives = { PatternObjective.maxOccupation() };
+
+    public ObjectiveSemAnalyzer setObjectives(PatternObjective... objectives) {
+        if (objectives.length == 0)
+            throw new IllegalArgumentException("At least one objective is needed.");
+        this.objectives = objectives.clone();
+        return this;
+    }
+
+    public PatternObjective[] getObjectives() {
+        return objectives.clone();
+    }
+
+    @Override
+    public double[] evaluateAll(SlotPattern pattern) {
+        pattern.applyTo(carSemaphores);
+
+        FlowMetrics[] flows = new FlowMetrics[carFlows.length];
+        for (int i = 0; i < carFlows.length; i++) {
+            flows[i] = flowMetrics(i);
+        }
+
+        double[] values = new double[objectives.length];
+        for (int k = 0; k < objectives.length; k++) {
+            values[k] = objectives[k].evaluate(flows);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,105 @@
+/* This program is part of the ORIS Tool.
+  * Copyright (C) 2011-2023 The ORIS Authors.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Affero General Public License as published by
+  * the Free Software Foundation, either version 3 of the License, or
+  * (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+  */
+
+package org.oristool.omnibus.bestsempattern;
+
+import au.com.bytecode.opencsv.CSVWriter;
+import org.oristool.omnibus.intersection.CarFlow;
+import org.oristool.omnibus.intersection.FlowMetrics;
+import org.oristool.omnibus.intersection.pattern.FlowResultCache;
+import org.oristool.omnibus.intersection.pattern.PatternSearch;
+import org.oristool.omnibus.intersection.pattern.SearchCheckpoint;
+import org.oristool.omnibus.metrics.Metrics;
+import org.oristool.omnibus.metrics.MetricsRegistry;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * La ricerca comune ai comparatori di pattern: valuta con
+ * {@link MinMaxOccupationSemAnalyzer} tutti i pattern dello scenario corrente
+ * di {@link ScenarioDefiner}, scrive i risultati in un CSV e riprende dal
+ * checkpoint di un'esecuzione interrotta con gli stessi parametri, che viene
+ * cancellato a ricerca completata.
+ */
+public class PatternComparatorSearch {
+
+    private PatternComparatorSearch() {
+    }
+
+    /**
+     * @param resultsPath      il percorso dei file dei risultati, senza
+     *                         estensione: i risultati vanno in ".csv" e il
+     *                         checkpoint in ".checkpoint"
+     * @param semSlotDurations le durate possibili degli slot di verde
+     * @param redTime          la durata del rosso tra due slot
+     * @return il risultato della ricerca
+     * @throws IOException se i file dei risultati non possono essere scritti
+     */
+    public static PatternSearch.Result search(String resultsPath, List<Integer> semSlotDurations, int redTime)
+            throws IOException {
+        // durate per fase e contatori dell'analisi, visibili anche via JMX
+        MetricsRegistry metrics = Metrics.enable();
+        Metrics.registerMBean();
+
+        CarFlow[] carFlows = ScenarioDefiner.createScenario();
+
+        List<VehicleFlow> vehicleFlows = new ArrayList<>();
+        for (int i = 0; i < carFlows.length; i++) {
+            vehicleFlows.add(new VehicleFlow(Integer.toString(i), semSlotDurations));
+        }
+
+        SearchCheckpoint checkpoint = SearchCheckpoint.open(Paths.get(resultsPath + ".checkpoint"),
+                ScenarioDefiner.describe() + " slots=" + semSlotDurations + " redTime=" + redTime
+                        + " objective=MinMaxOccupation");
+        System.out.println(checkpoint.getRecoveredPatterns() + " patterns recovered from " + checkpoint.getFile());
+
+        CSVWriter resultListWriter = new CSVWriter(new FileWriter(resultsPath + ".csv"), '\t');
+        PatternSearch.Result result;
+        FlowResultCache<FlowMetrics> flowResultCache = new FlowResultCache<>();
+        try {
+            result = new PatternSearch(
+                    () -> new MinMaxOccupationSemAnalyzer().setTimeStep(ScenarioDefiner.timeStep).setCarFlows(carFlows)
+                            .setFlowResultCache(flowResultCache))
+                    .setCheckpoint(checkpoint)
+                    .setProgressListener(progress -> {
+                        System.out.println(progress);
+                        return true;
+                    })
+                    .setResultListener((pattern, value) -> resultListWriter.writeNext(
+                            new String[] { pattern.toString(), Double.toString(value) }))
+                    .search(SemPatternGenerator.spliterateAllSlotPatternWithGreenSlotSets(
+                            vehicleFlows, ScenarioDefiner.semPeriod.intValue(), redTime));
+        } finally {
+            resultListWriter.close();
+        }
+
+        System.out.println(result.getEvaluatedPatterns() + " patterns analyzed, "
+                + flowResultCache.getHits() + " flow results reused");
+        System.out.println("Best reward: " + result.getBestValue());
+        System.out.println(result.getBestPattern());
+        System.out.println(metrics.snapshot());
+
+        // ricerca completata, la prossima esecuzione riparte da zero
+        checkpoint.delete();
+        return result;
+    }
+
+}
@@ -129,6 +129,16 @@ public class ScenarioDefiner {
 
     }
 
+    // descrive tutti i parametri dello scenario, per riconoscere i checkpoint di scenari diversi
+    public static String describe() {
+        return "tram1=" + Arrays.asList(t1_periodTime, t1_phaseTime, t1_delayEFTime, t1_delayLFTime,
+                t1_crosslightAntTime, t1_leavingEFTime, t1_leavingLFTime)
+                + " tram2=" + Arrays.asList(t2_periodTime, t2_phaseTime, t2_delayEFTime, t2_delayLFTime,
+                t2_crosslightAntTime, t2_leavingEFTime, t2_leavingLFTime)
+                + " arrivalRates=" + arrivalRates + " mus=" + mus_mmkk + " maxQueueSizes=" + maxQueueSizes
+                + " timeStep=" + timeStep + " semPeriod=" + semPeriod;
+    }
+
     public static CarFlow[] createScenario() {
 
         // DEFINIZIONE E ANALISI ATTRAVERSAMENTO TRAMVIARIO
@@ -18,31 +18,37 @@
 package org.oristool.omnibus.bestsempattern;
 
 import java.math.BigDecimal;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.stream.Collectors;
 
 import org.oristool.omnibus.intersection.CarFlow;
 import org.oristool.omnibus.intersection.CarSemaphore;
+import org.oristool.omnibus.intersection.FlowMetrics;
+import org.oristool.omnibus.intersection.analysis.DTMCSteadyStateAnalyzer;
+import org.oristool.omnibus.intersection.pattern.FlowResultCache;
+import org.oristool.omnibus.intersection.pattern.PatternEvaluator;
+import org.oristool.omnibus.vehicle.analysis.MMSS_QueueAnalyzer;
+import org.oristool.omnibus.vehicle.analysis.TransientAnalyzer.Validation;
 
-public abstract class SemAnalyzer implements Callable<Double> {
+public abstract class SemAnalyzer implements PatternEvaluator {
 
-    protected BlockingQueue<String> patternsToAnalyze;
     protected BigDecimal timeStep;
     protected CarSemaphore[] carSemaphores;
     protected CarFlow[] carFlows;
 
-    protected String bestPattern;
+    // metriche per flusso, indicizzate dal piano del semaforo del flusso
+    protected FlowResultCache<FlowMetrics> flowResultCache = new FlowResultCache<>();
 
-    public void setPatternsToAnalyze(BlockingQueue<String> patternsToAnalyze) {
-        this.patternsToAnalyze = patternsToAnalyze;
-    }
-
-    public void setTimeStep(BigDecimal timeStep) {
+    public SemAnalyzer setTimeStep(BigDecimal timeStep) {
         this.timeStep = timeStep;
+        this.flowResultCache = new FlowResultCache<>();
+        return this;
     }
 
     public SemAnalyzer setCarFlows(CarFlow... carFlows) {
+        // i risultati in cache valgono solo per i flussi con cui sono stati calcolati
+        this.flowResultCache = new FlowResultCache<>();
         this.carFlows = new CarFlow[carFlows.length];
         this.carSemaphores = new CarSemaphore[carFlows.length];
         for (int i = 0; i < carFlows.length; i++) {
@@ -53,7 +59,49 @@ public abstract class SemAnalyzer implements Callable<Double> {
         return this;
     }
 
-    public String getBestPattern() {
-        return bestPattern;
+    /**
+     * Imposta la cache dei risultati per flusso, che può essere condivisa dagli
+     * analizzatori degli stessi flussi con lo stesso passo (null per
+     * disabilitarla). Va impostata dopo i flussi e il passo, che la sostituiscono
+     * con una cache nuova.
+     */
+    public SemAnalyzer setFlowResultCache(FlowResultCache<FlowMetrics> flowResultCache) {
+        this.flowResultCache = flowResultCache;
+        return this;
+    }
+
+    public FlowResultCache<FlowMetrics> getFlowResultCache() {
+        return flowResultCache;
+    }
+
+    /**
+     * Restituisce le metriche del flusso i-esimo per il piano corrente del suo
+     * semaforo, ricalcolandole solo se il piano non è in cache.
+     */
+    protected FlowMetrics flowMetrics(int i) {
+        if (flowResultCache == null)
+            return analyzeFlow(carFlows[i]).getFlowMetrics();
+        return flowResultCache.get(i, carSemaphores[i], () -> analyzeFlow(carFlows[i]).getFlowMetrics());
+    }
+
+    /**
+     * Analizza il flusso lungo un iperperiodo, partendo dalla distribuzione
+     * stazionaria all'inizio dell'iperperiodo.
+     */
+    protected CarFlow analyzeFlow(CarFlow carFlow) {
+        // le esplorazioni valutano milioni di piani con lo stesso passo: i controlli
+        // delle probabilità a campione bastano a rilevare un passo troppo grande
+        double[] steadyStateDistribution = carFlow.analyzeSteadyStateDistribution(new DTMCSteadyStateAnalyzer(),
+                new MMSS_QueueAnalyzer().setValidation(Validation.SAMPLED), timeStep).getSteadyStateDistribution();
+
+        BigDecimal[] bdDist = Arrays.stream(steadyStateDistribution).mapToObj(BigDecimal::valueOf)
+                .collect(Collectors.toList()).toArray(new BigDecimal[0]);
+
+        carFlow.getQueue().setInitialDistribution(bdDist);
+
+        return carFlow.analyzeQueue(
+                new MMSS_QueueAnalyzer().setValidation(Validation.SAMPLED),
+                BigInteger.valueOf(carFlow.getObstaclesHyperPeriod()),
+                timeStep);
     }
-}
\ No newline at end of file
+}
@@ -17,37 +17,48 @@
 
 package org.oristool.omnibus.bestsempattern;
 
+import org.oristool.omnibus.intersection.pattern.SlotPattern;
+
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class SemPatternGenerator {
 
-	public static Set<String> generatePatterns(int flows, int totalLength, int minimumSlot, int advancement,
+	/**
+	 * Genera tutti i pattern di lunghezza {@code totalLength} fatti di slot di
+	 * almeno {@code minimumSlot} secondi, con durate che crescono di
+	 * {@code advancement}, e con slot consecutivi assegnati a flussi diversi. Il
+	 * primo slot non è assegnato a {@code lastFlow} (-1 per nessun vincolo), a cui
+	 * invece va il tempo che avanza quando non basta per un altro slot.
+	 */
+	public static Set<SlotPattern> generatePatterns(int flows, int totalLength, int minimumSlot, int advancement,
 			int lastFlow) {
-		if (flows > 10 || flows < 1)
-			throw new IllegalArgumentException("Questo generatore non funziona con più di dieci flussi (o meno di 1).");
+		checkFlows(flows);
 
-		Set<String> patterns = new LinkedHashSet<>();
+		Set<SlotPattern> patterns = new LinkedHashSet<>();
 
 		if (minimumSlot > totalLength) {
-			char[] base = new char[totalLength];
-			Arrays.fill(base, Integer.toString(lastFlow).toCharArray()[0]);
-			patterns.add(new String(base));
+			SlotPattern.Builder base = new SlotPattern.Builder();
+			if (totalLength > 0)
+				base.add(lastFlow, totalLength);
+			patterns.add(base.build());
 		} else {
 			for (int i = 0; i < flows; i++) {
 				if (i == lastFlow)
 					continue;
 				for (int length = minimumSlot; length <= totalLength; length += advancement) {
-
-					char[] base = new char[length];
-					Arrays.fill(base, Integer.toString(i).toCharArray()[0]);
-
-					Set<String> subPatterns = generatePatterns(flows, totalLength - length, minimumSlot, advancement,
+					Set<SlotPattern> subPatterns = generatePatterns(flows, totalLength - length, minimumSlot, advancement,
 							i);
-					for (String subPattern : subPatterns) {
-						StringBuilder sb = new StringBuilder();
-						sb.append(base);
-						sb.append(subPattern);
-						patterns.add(sb.toString());
+					for (SlotPattern subPattern : subPatterns) {
+						SlotPattern.Builder builder = new SlotPattern.Builder().add(i, length);
+						for (int k = 0; k < subPattern.getSlotCount(); k++) {
+							builder.add(subPattern.getFlow(k), subPattern.getDuration(k));
+						}
+						patterns.add(builder.build());
 					}
 				}
 			}
@@ -64,46 +75,34 @@ public class SemPatternGenerator {
 	 * Qualora il periodo non sia divisibile per la lunghezza degli slot, l'ultimo
 	 * slot è più piccolo.
 	 * <p>
-	 * Restituisce una stringa in cui a ogni carattere corrisponde un secondo
-	 * assegnato al flusso corrispondente, ad esempio 000011112222 indica un periodo
-	 * di 12 secondi con quattro secondi assegnati al flusso zero, quattro al flusso
-	 * uno e quattro al flusso due.
+	 * Ad esempio 000011112222 indica un periodo di 12 secondi con quattro secondi
+	 * assegnati al flusso zero, quattro al flusso uno e quattro al flusso due.
 	 */
-	public static String generateRandomPattern(int flows, int totalLength, int minimumSlot) {
-		if (flows > 10 || flows < 1)
-			throw new IllegalArgumentException("Questo generatore non funziona con più di dieci flussi (o meno di 1).");
+	public static SlotPattern generateRandomPattern(int flows, int totalLength, int minimumSlot) {
+		checkFlows(flows);
 
-		StringBuilder sb = new StringBuilder();
+		SlotPattern.Builder builder = new SlotPattern.Builder();
 		Random random = new Random();
-		while (sb.length() < totalLength) {
-			int i = random.nextInt(flows); // sorteggia un flusso
-			for (int j = 0; j < minimumSlot; j++) {
-				sb.append(Integer.toString(i).toCharArray()[0]); // "appende" le assegnazioni
-			}
+		for (int length = 0; length < totalLength; length += minimumSlot) {
+			// sorteggia un flusso, l'ultimo slot è accorciato alla fine del periodo
+			builder.add(random.nextInt(flows), Math.min(minimumSlot, totalLength - length));
 		}
-		while (sb.length() > totalLength) {
-			sb.deleteCharAt(sb.length() - 1);
-		}
-		return sb.toString();
+		return builder.build();
 	}
 
-	public static List<String> generateNearPatterns(String pattern, int flows, int slotDuration) {
-		ArrayList<String> patterns = new ArrayList<>();
-		char[] pa = pattern.toCharArray();
+	public static List<SlotPattern> generateNearPatterns(SlotPattern pattern, int flows, int slotDuration) {
+		ArrayList<SlotPattern> patterns = new ArrayList<>();
+		byte[] pa = pattern.toFlowIds();
 		for (int i = 0; i < pa.length; i += slotDuration) {
 			for (int f = 0; f < flows; f++) {
-				if (Integer.parseInt(String.valueOf(pa[i])) != f) {
-					char[] clone = pa.clone();
+				if ((pa[i] & 0xFF) != f) {
+					byte[] clone = pa.clone();
 					if (i + 2 * slotDuration <= clone.length) {
-						for (int j = i; j < i + slotDuration; j++) {
-							clone[j] = String.valueOf(f).charAt(0);
-						}
+						Arrays.fill(clone, i, i + slotDuration, (byte) f);
 					} else {
-						for (int j = i; j < clone.length; j++) {
-							clone[j] = String.valueOf(f).charAt(0);
-						}
+						Arrays.fill(clone, i, clone.length, (byte) f);
 					}
-					patterns.add(new String(clone));
+					patterns.add(SlotPattern.fromFlowIds(clone));
 				}
 			}
 		}
@@ -114,16 +113,17 @@ public class SemPatternGenerator {
 	 * Metodo riunione 04/10/2022 (rivelatosi cattivo, perché privilegia gli slot
 	 * piccoli)
 	 */
-	public static List<String> generateRandomPatternsWithSlots(int flows, int period, List<Integer> slotDurations,
+	public static List<SlotPattern> generateRandomPatternsWithSlots(int flows, int period, List<Integer> slotDurations,
 			int patterns) {
-		ArrayList<String> strings = new ArrayList<>();
+		checkFlows(flows);
+		ArrayList<SlotPattern> generated = new ArrayList<>();
 		for (int i = 0; i < patterns; i++) {
-			strings.add(generateRandomPatternWithSlots(flows, period, slotDurations));
+			generated.add(generateRandomPatternWithSlots(flows, period, slotDurations));
 		}
-		return strings;
+		return generated;
 	}
 
-	private static String generateRandomPatternWithSlots(int flows, int period, List<Integer> slotDurations) {
+	private static SlotPattern generateRandomPatternWithSlots(int flows, int period, List<Integer> slotDurations) {
 		// ordina per lunghezza le durate degli slot
 		Collections.sort(slotDurations);
 
@@ -165,33 +165,32 @@ public class SemPatternGenerator {
 
 		Collections.shuffle(chunks);
 
-		StringBuilder sb = new StringBuilder();
+		SlotPattern.Builder builder = new SlotPattern.Builder();
 		int lastFlow = -1;
 		for (Integer c : chunks) {
 			int f;
 			while ((f = random.nextInt(flows)) == lastFlow) {
 			}
-			for (int i = 0; i < c; i++) {
-				sb.append(f);
-			}
+			builder.add(f, c);
 		}
-		return sb.toString();
+		return builder.build();
 	}
 
 	/**
 	 * Generatore di pattern senza ripetizioni all'interno del periodo (un solo slot
 	 * per coda)
 	 */
-	public static List<String> generateRandomPatternsWithSingleSlot(int flows, int period, int minimumSlot,
+	public static List<SlotPattern> generateRandomPatternsWithSingleSlot(int flows, int period, int minimumSlot,
 			int patterns) {
-		ArrayList<String> strings = new ArrayList<>();
+		checkFlows(flows);
+		ArrayList<SlotPattern> generated = new ArrayList<>();
 		for (int i = 0; i < patterns; i++) {
-			strings.add(generateRandomPatternWithSingleSlot(flows, period, minimumSlot));
+			generated.add(generateRandomPatternWithSingleSlot(flows, period, minimumSlot));
 		}
-		return strings;
+		return generated;
 	}
 
-	private static String generateRandomPatternWithSingleSlot(int flows, int period, int minimumSlot) {
+	private static SlotPattern generateRandomPatternWithSingleSlot(int flows, int period, int minimumSlot) {
 		List<Integer> flowList = new ArrayList<>();
 		for (int i = 0; i < flows; i++) {
 			flowList.add(i);
@@ -216,7 +215,7 @@ public class SemPatternGenerator {
 			managedTime += greenTime;
 		}
 
-		StringBuilder sb = new StringBuilder();
+		SlotPattern.Builder builder = new SlotPattern.Builder();
 		while (!flowGreenTime.isEmpty()) {
 			// sorteggia un flusso e lo recupera (e rimuove) dalla mappa
 			int f = (int) flowGreenTime.keySet().toArray()[rand.nextInt(flowGreenTime.size())];
@@ -224,76 +223,80 @@ public class SemPatternGenerator {
 			flowGreenTime.remove(f);
 
 			// inserisce nel pattern il flusso per la sua durata
-			for (int i = 0; i < greenTime; i++) {
-				sb.append(f);
-			}
+			builder.add(f, greenTime);
 		}
 
-		return sb.toString();
+		return builder.build();
 	}
 
 	/**
 	 * Generatore di pattern con ripetizioni all'interno del periodo e periodo di
 	 * rosso per tutti
 	 */
-	public static List<String> generateRandomPatternWithRedTime(int flows, int period, int minimumSlot, int redTime,
-			int patterns) {
-		ArrayList<String> strings = new ArrayList<>();
+	public static List<SlotPattern> generateRandomPatternWithRedTime(int flows, int period, int minimumSlot,
+			int redTime, int patterns) {
+		ArrayList<SlotPattern> generated = new ArrayList<>();
 		for (int i = 0; i < patterns; i++) {
-			strings.add(generateRandomPatternWithRedTime(flows, period, minimumSlot, redTime));
+			generated.add(generateRandomPatternWithRedTime(flows, period, minimumSlot, redTime));
 		}
-		return strings;
+		return generated;
 	}
 
-	public static String generateRandomPatternWithRedTime(int flows, int period, int minimumSlot, int redTime) {
-		if (flows > 9 || flows < 1)
-			throw new IllegalArgumentException("Questo generatore non funziona con più di nove flussi (o meno di 1).");
-
-		int red4All = 9;
+	public static SlotPattern generateRandomPatternWithRedTime(int flows, int period, int minimumSlot, int redTime) {
+		checkFlows(flows);
 
-		StringBuilder sb = new StringBuilder();
+		// il flusso assegnato a ogni secondo, il rosso per tutti è SlotPattern.RED
+		int[] seconds = new int[period + redTime + minimumSlot];
+		int length = 0;
 		Random random = new Random();
 		int firstFlow = -1, previousFlow = -1;
-		while (sb.length() < period - 2 * redTime - minimumSlot) {
+		while (length < period - 2 * redTime - minimumSlot) {
 			int i = random.nextInt(flows); // sorteggia un flusso
 			if (firstFlow == -1)
 				firstFlow = i;
 			// se il flusso sorteggiato è diverso dal precedente, assegna un periodo di
-			// rosso per tutti (cifra
-			// riservata : red4All)
+			// rosso per tutti
 			if (i != previousFlow && previousFlow != -1) {
 				for (int j = 0; j < redTime; j++) {
-					sb.append(red4All);
+					seconds[length++] = SlotPattern.RED;
 				}
 			}
 			for (int j = 0; j < minimumSlot; j++) {
-				sb.append(i); // "appende" le assegnazioni
+				seconds[length++] = i; // "appende" le assegnazioni
 			}
 			previousFlow = i;
 		}
-		// if (sb.length() > period - 2 * redTime - minimumSlot) {
 		if (previousFlow == firstFlow) {
 			// se l'ultimo slot è assegnato allo stesso flusso che al primo non serve il
 			// periodo di rosso per tutti
-			while (sb.length() < period) {
-				sb.append(previousFlow);
+			while (length < period) {
+				seconds[length++] = previousFlow;
 			}
 		} else { // l'ultimo flusso è diverso dal primo, quindi occorre il periodo di rosso
 			// se non c'è spazio per il periodo di rosso, l'ultimo slot viene accorciato
 			// (forse non capita mai qui)
-			while (sb.length() > period - redTime) {
-				sb.deleteCharAt(sb.length() - 1);
-			}
+			length = Math.min(length, period - redTime);
 			// se invece avanza tempo al termine del periodo allunga l'ultimo slot
-			while (sb.length() < period - redTime) {
-				sb.append(previousFlow);
+			while (length < period - redTime) {
+				seconds[length++] = previousFlow;
 			}
 			// inserisce il periodo di rosso per tutti
-			while (sb.length() < period) {
-				sb.append(red4All);
+			while (length < period) {
+				seconds[length++] = SlotPattern.RED;
 			}
 		}
-		return sb.toString();
+
+		SlotPattern.Builder builder = new SlotPattern.Builder();
+		for (int k = 0; k < length; k++) {
+			builder.add(seconds[k], 1);
+		}
+		return builder.build();
+	}
+
+	private static void checkFlows(int flows) {
+		if (flows > SlotPattern.MAX_FLOWS || flows < 1)
+			throw new IllegalArgumentException(
+					"Questo generatore funziona con un numero di flussi tra 1 e " + SlotPattern.MAX_FLOWS + ".");
 	}
 
 	public static Set<SemaphorePattern> generateAllPatternWithGreenSlotSets(List<VehicleFlow> flows, int period,
@@ -323,11 +326,170 @@ public class SemPatternGenerator {
 		return finalPatterns;
 	}
 
+	/**
+	 * Genera gli stessi pattern di
+	 * {@link #generateAllPatternWithGreenSlotSets(List, int, int)}, ma in modo
+	 * lazy con una visita in profondità: la memoria occupata è proporzionale alla
+	 * profondità dell'albero dei sottopattern e non al numero di pattern, e il
+	 * primo pattern è disponibile subito.
+	 * <p>
+	 * Lo spliterator restituito può essere suddiviso ({@link Spliterator#trySplit()})
+	 * cedendo metà dei rami non ancora visitati al livello più alto dell'albero,
+	 * quindi può alimentare più thread (ad esempio con uno stream parallelo).
+	 */
+	public static Spliterator<SemaphorePattern> spliterateAllPatternWithGreenSlotSets(List<VehicleFlow> flows,
+			int period, int redTime) {
+		return new GreenSlotSetsSpliterator<>(new SemaphorePattern(flows, period, redTime), Function.identity(), null);
+	}
+
+	/**
+	 * Come {@link #spliterateAllPatternWithGreenSlotSets(List, int, int)}, ma
+	 * restituisce direttamente gli {@link SlotPattern}, ad esempio per una
+	 * {@link org.oristool.omnibus.intersection.pattern.PatternSearch}.
+	 */
+	public static Spliterator<SlotPattern> spliterateAllSlotPatternWithGreenSlotSets(List<VehicleFlow> flows,
+			int period, int redTime) {
+		return spliterateAllSlotPatternWithGreenSlotSets(flows, period, redTime, null);
+	}
+
+	/**
+	 * Come {@link #spliterateAllSlotPatternWithGreenSlotSets(List, int, int)}, ma
+	 * scarta interi sottoalberi: un sottopattern per cui {@code prune} è vero non
+	 * viene esteso (branch and bound, ad esempio con
+	 * {@link org.oristool.omnibus.intersection.pattern.OccupationLowerBound}).
+	 * Il predicato riceve i primi slot del pattern e può essere chiamato da più
+	 * thread.
+	 */
+	public static Spliterator<SlotPattern> spliterateAllSlotPatternWithGreenSlotSets(List<VehicleFlow> flows,
+			int period, int redTime, Predicate<SlotPattern> prune) {
+		return new GreenSlotSetsSpliterator<>(new SemaphorePattern(flows, period, redTime),
+				SemaphorePattern::getPattern, prune);
+	}
+
+	public static Iterator<SemaphorePattern> iterateAllPatternWithGreenSlotSets(List<VehicleFlow> flows, int period,
+			int redTime) {
+		return Spliterators.iterator(spliterateAllPatternWithGreenSlotSets(flows, period, redTime));
+	}
+
+	public static Stream<SemaphorePattern> streamAllPatternWithGreenSlotSets(List<VehicleFlow> flows, int period,
+			int redTime, boolean parallel) {
+		return StreamSupport.stream(spliterateAllPatternWithGreenSlotSets(flows, period, redTime), parallel);
+	}
+
+	/**
+	 * Visita in profondità con uno stack esplicito. Ogni livello conserva il
+	 * sottopattern padre e la lista dei suoi figli ancora da visitare.
+	 * <p>
+	 * I duplicati che la versione con il Set elimina nascono solo dall'ultimo slot:
+	 * due sottopattern finali che differiscono soltanto per la durata dell'ultimo
+	 * slot diventano uguali dopo
+	 * {@link SemaphorePattern#fillRemainingGreenTimeWithLastFlow()}. Per questo un
+	 * pattern finale viene restituito solo se nessuno slot più lungo dello stesso
+	 * flusso era ammissibile al suo posto.
+	 */
+	private static final class GreenSlotSetsSpliterator<T> implements Spliterator<T> {
+
+		private static final class Frame {
+			private final SemaphorePattern parent;
+			private final List<SemaphorePattern> children;
+			private int next;
+			private int end;
+
+			private Frame(SemaphorePattern parent, List<SemaphorePattern> children, int next, int end) {
+				this.parent = parent;
+				this.children = children;
+				this.next = next;
+				this.end = end;
+			}
+		}
+
+		private final Deque<Frame> stack = new ArrayDeque<>();
+		private final Function<SemaphorePattern, T> mapper;
+		private final Predicate<SlotPattern> prune;
+
+		private GreenSlotSetsSpliterator(SemaphorePattern root, Function<SemaphorePattern, T> mapper,
+				Predicate<SlotPattern> prune) {
+			this.mapper = mapper;
+			this.prune = prune;
+			push(root);
+		}
+
+		private GreenSlotSetsSpliterator(Frame frame, Function<SemaphorePattern, T> mapper,
+				Predicate<SlotPattern> prune) {
+			this.mapper = mapper;
+			this.prune = prune;
+			stack.push(frame);
+		}
+
+		private void push(SemaphorePattern parent) {
+			List<SemaphorePattern> children = generetateAllFeasibleNextSubpatterns(parent);
+			stack.push(new Frame(parent, children, 0, children.size()));
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			while (!stack.isEmpty()) {
+				Frame frame = stack.peek();
+				if (frame.next == frame.end) {
+					stack.pop();
+					continue;
+				}
+				SemaphorePattern child = frame.children.get(frame.next++);
+				if (prune != null && prune.test(child.getPattern())) {
+					continue;
+				} else if (!child.noMorePossibleSlotsExist()) {
+					push(child);
+				} else if (child.representsAllFlowsAtLeastOnce() && !child.firstAndLastFlowsCoincide()
+						&& hasLongestLastSlot(frame.parent, child)) {
+					SemaphorePattern pattern = new SemaphorePattern(child);
+					pattern.fillRemainingGreenTimeWithLastFlow();
+					action.accept(mapper.apply(pattern));
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean hasLongestLastSlot(SemaphorePattern parent, SemaphorePattern child) {
+			int lastSlot = parent.getRemainingTime() - child.getRemainingTime() - child.getRedTime();
+			for (int greenSlot : child.getLastFlowServed().getGreenSlots()) {
+				if (greenSlot > lastSlot && greenSlot + child.getRedTime() <= parent.getRemainingTime())
+					return false;
+			}
+			return true;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			Iterator<Frame> frames = stack.descendingIterator();
+			while (frames.hasNext()) {
+				Frame frame = frames.next();
+				if (frame.end - frame.next >= 2) {
+					int mid = (frame.next + frame.end) >>> 1;
+					Frame split = new Frame(frame.parent, frame.children, mid, frame.end);
+					frame.end = mid;
+					return new GreenSlotSetsSpliterator<>(split, mapper, prune);
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public long estimateSize() {
+			return stack.isEmpty() ? 0 : Long.MAX_VALUE;
+		}
+
+		@Override
+		public int characteristics() {
+			return DISTINCT | NONNULL;
+		}
+	}
+
 	private static List<SemaphorePattern> generetateAllFeasibleNextSubpatterns(SemaphorePattern subPattern) {
 		List<SemaphorePattern> newSubPatterns = new ArrayList<>();
 		for (VehicleFlow flow : subPattern.getInvolvedFlows()) {
 			if (!subPattern.hasServedThisFlowPreviously(flow)) {
-				for (int greenSlot : flow.getGreenSlots()) {
+				for (int greenSlot : new LinkedHashSet<>(flow.getGreenSlots())) {
 					if (greenSlot + subPattern.getRedTime() <= subPattern.getRemainingTime()) {
 						SemaphorePattern newSubPattern = new SemaphorePattern(subPattern);
 						newSubPattern.addGreenSlot(flow.getClone(), greenSlot);
@@ -17,14 +17,15 @@
 
 package org.oristool.omnibus.bestsempattern;
 
+import org.oristool.omnibus.intersection.pattern.SlotPattern;
+
 import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 public class SemaphorePattern {
 
-    public static final String RED_SYMBOL = "9";
+    public static final String RED_SYMBOL = String.valueOf(SlotPattern.RED_DIGIT);
 
     private List<VehicleFlow> involvedFlows;
     private List<VehicleFlow> remainingFlows;
@@ -44,7 +45,9 @@ public class SemaphorePattern {
     private String firstFlowId;
     private String lastFlowId;
 
-    private StringBuilder scheduleBuilder;
+    private SlotPattern.Builder scheduleBuilder;
+    // il pattern costruito dagli slot, ricalcolato solo dopo una modifica
+    private SlotPattern pattern;
 
     // questo non ha tutto questo senso...
     private int lastSlotTimeStep;
@@ -55,7 +58,7 @@ public class SemaphorePattern {
         this.period = period;
         this.redTime = redTime;
         this.lastSlotTimeStep = 0;
-        this.scheduleBuilder = new StringBuilder();
+        this.scheduleBuilder = new SlotPattern.Builder();
         this.lastFlowServed = null;
         this.empty = true;
     }
@@ -66,7 +69,8 @@ public class SemaphorePattern {
         this.period = subPattern.getPeriod();
         this.redTime = subPattern.getRedTime();
         this.lastSlotTimeStep = subPattern.getLastSlotTimeStep();
-        this.scheduleBuilder = new StringBuilder(subPattern.getScheduleBuilder());
+        this.scheduleBuilder = subPattern.scheduleBuilder.copy();
+        this.pattern = subPattern.pattern;
         this.lastFlowServed = subPattern.getLastFlowServed();
         this.empty = subPattern.isEmpty();
         this.firstFlowId = subPattern.getFirstFlowId();
@@ -75,7 +79,13 @@ public class SemaphorePattern {
     }
 
     public String getSchedule() {
-        return scheduleBuilder.toString();
+        return getPattern().toString();
+    }
+
+    public SlotPattern getPattern() {
+        if (pattern == null)
+            pattern = scheduleBuilder.build();
+        return pattern;
     }
 
     public void addGreenSlot(VehicleFlow flow, int greenSlot) {
@@ -85,8 +95,9 @@ public class SemaphorePattern {
         }
         this.lastFlowId = flow.getId();
 
-        scheduleBuilder.append(flow.getId().repeat(greenSlot));
-        scheduleBuilder.append(RED_SYMBOL.repeat(redTime));
+        scheduleBuilder.add(flowIndex(flow.getId()), greenSlot);
+        scheduleBuilder.add(SlotPattern.RED, redTime);
+        pattern = null;
 
         if (remainingFlows.contains(flow))
             remainingFlows.remove(flow);
@@ -117,7 +128,8 @@ public class SemaphorePattern {
     }
 
     public void fillRemainingWithRed() {
-        scheduleBuilder.append(RED_SYMBOL.repeat(getRemainingTime()));
+        scheduleBuilder.add(SlotPattern.RED, getRemainingTime());
+        pattern = null;
     }
 
     public void fillRemainingGreenTimeWithLastFlow() {
@@ -128,10 +140,13 @@ public class SemaphorePattern {
             // inserisco il verde per il tempo ulteriore
 //			scheduleBuilder.append(lastFlowId.repeat(greenTime - redTime));
 
-            // cancello ultimo rosso
-            scheduleBuilder.delete(lastSlotTimeStep - redTime, lastSlotTimeStep);
-            scheduleBuilder.append(lastFlowId.repeat(greenTime));
-            scheduleBuilder.append(RED_SYMBOL.repeat(redTime));
+            // cancello ultimo rosso: removeLastSlot toglie l'intero slot finale, qui il rosso
+            // di redTime che segue l'ultimo verde
+            if (redTime > 0)
+                scheduleBuilder.removeLastSlot();
+            scheduleBuilder.add(flowIndex(lastFlowId), greenTime);
+            scheduleBuilder.add(SlotPattern.RED, redTime);
+            pattern = null;
 
 
         }
@@ -180,8 +195,9 @@ public class SemaphorePattern {
         return lastSlotTimeStep;
     }
 
-    public StringBuilder getScheduleBuilder() {
-        return scheduleBuilder;
+    public SlotPattern.Builder getScheduleBuilder() {
+        // una copia, così il pattern in cache non può diventare obsoleto
+        return scheduleBuilder.copy();
     }
 
     public String getFirstFlowId() {
@@ -196,9 +212,16 @@ public class SemaphorePattern {
         return empty;
     }
 
+    private static int flowIndex(String flowId) {
+        int index = Integer.parseInt(flowId);
+        if (index < 0 || index >= SlotPattern.MAX_FLOWS)
+            throw new IllegalArgumentException("Flow ids must be in [0, " + SlotPattern.MAX_FLOWS + ").");
+        return index;
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hash(this.scheduleBuilder.toString());
+        return getPattern().hashCode();
     }
 
     @Override
@@ -210,6 +233,6 @@ public class SemaphorePattern {
         if (getClass() != obj.getClass())
             return false;
         SemaphorePattern other = (SemaphorePattern) obj;
-        return this.scheduleBuilder.toString().equals(other.getSchedule());
+        return getPattern().equals(other.getPattern());
     }
 }
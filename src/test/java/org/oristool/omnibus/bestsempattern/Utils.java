@@ -17,23 +17,17 @@
 
 package org.oristool.omnibus.bestsempattern;
 
-import java.math.BigInteger;
 import java.util.Arrays;
 
 import org.oristool.omnibus.intersection.CarSemaphore;
+import org.oristool.omnibus.intersection.pattern.SlotPattern;
 
 public class Utils {
 
+    // ogni carattere è la cifra del flusso in verde in quel secondo, la cifra
+    // SlotPattern.RED_DIGIT è sempre il rosso per tutti (quindi al più nove flussi)
     public static void assignGreen(String pattern, CarSemaphore... carSemaphores) {
-        Arrays.stream(carSemaphores).sequential().forEach(carSemaphore ->
-                carSemaphore.setRed(new BigInteger("0"), carSemaphore.getPeriod()));
-
-        char[] chars = pattern.toCharArray();
-        for (int i = 0; i < chars.length; i++) {
-            int greenFlow = Integer.parseInt(String.valueOf(chars[i]));
-            if (greenFlow != 9)
-                carSemaphores[greenFlow].setGreen(BigInteger.valueOf(i), BigInteger.valueOf(i + 1));
-        }
+        SlotPattern.fromDigits(pattern).applyTo(carSemaphores);
     }
 
     public static int lcm(int... numbers) {